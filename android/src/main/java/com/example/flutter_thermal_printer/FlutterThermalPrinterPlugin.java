@@ -5,6 +5,7 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 
 import java.util.List;
+import java.util.Map;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.plugin.common.MethodCall;
@@ -24,21 +25,30 @@ public class FlutterThermalPrinterPlugin implements FlutterPlugin, MethodCallHan
     private MethodChannel channel;
     private EventChannel deviceEventChannel;
     private EventChannel callerIdEventChannel;
+    private EventChannel warmUpEventChannel;
     private Context context;
     private UsbDevicesManager usbDevicesManager;
+    private EventChannel.StreamHandler deviceStreamHandler;
+    private EventChannel.StreamHandler callerIdStreamHandler;
+    private EventChannel.StreamHandler warmUpStreamHandler;
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
         channel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_thermal_printer");
         deviceEventChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_thermal_printer/device_events");
         callerIdEventChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_thermal_printer/callerid_events");
+        warmUpEventChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_thermal_printer/warmup_events");
 
         channel.setMethodCallHandler(this);
         context = flutterPluginBinding.getApplicationContext();
-        usbDevicesManager = new UsbDevicesManager(context);
-        deviceEventChannel.setStreamHandler(usbDevicesManager.getDeviceStreamHandler());
-        callerIdEventChannel.setStreamHandler(usbDevicesManager.getCallerIdStreamHandler());
-
+        // Shared by every engine in the process; see PrinterHub
+        usbDevicesManager = PrinterHub.acquire(context);
+        deviceStreamHandler = usbDevicesManager.getDeviceStreamHandler();
+        callerIdStreamHandler = usbDevicesManager.getCallerIdStreamHandler();
+        warmUpStreamHandler = usbDevicesManager.getWarmUpStreamHandler();
+        deviceEventChannel.setStreamHandler(deviceStreamHandler);
+        callerIdEventChannel.setStreamHandler(callerIdStreamHandler);
+        warmUpEventChannel.setStreamHandler(warmUpStreamHandler);
     }
 
     @Override
@@ -70,10 +80,68 @@ public class FlutterThermalPrinterPlugin implements FlutterPlugin, MethodCallHan
                 String productId = call.argument("productId");
                 String deviceId = call.argument("deviceId");
                 List<Integer> data = call.argument("data");
-                usbDevicesManager.printText(vendorId, productId, deviceId, data);
+                usbDevicesManager.printText(vendorId, productId, deviceId, data, result::success);
+                break;
+            }
+            case "printBatch": {
+                List<Map<String, Object>> jobs = call.argument("jobs");
+                usbDevicesManager.printBatch(jobs, result::success);
+                break;
+            }
+            case "printImage": {
+                String vendorId = call.argument("vendorId");
+                String productId = call.argument("productId");
+                String deviceId = call.argument("deviceId");
+                byte[] image = call.argument("image");
+                Integer width = call.argument("width");
+                Integer bandRows = call.argument("bandRows");
+                usbDevicesManager.printImage(vendorId, productId, deviceId, image,
+                        width != null ? width : 0, bandRows != null ? bandRows : 0, (stats, error) -> {
+                            if (error != null) {
+                                result.error("PRINT_IMAGE_FAILED", error, null);
+                            } else {
+                                result.success(stats);
+                            }
+                        });
+                break;
+            }
+            case "calibrate": {
+                String vendorId = call.argument("vendorId");
+                String productId = call.argument("productId");
+                String deviceId = call.argument("deviceId");
+                usbDevicesManager.calibrate(vendorId, productId, deviceId, (profile, error) -> {
+                    if (error != null) {
+                        result.error("CALIBRATION_FAILED", error, null);
+                    } else {
+                        result.success(profile);
+                    }
+                });
+                break;
+            }
+            case "getThroughputProfile": {
+                String vendorId = call.argument("vendorId");
+                String productId = call.argument("productId");
+                result.success(usbDevicesManager.getThroughputProfile(vendorId, productId));
+                break;
+            }
+            case "clearThroughputProfile": {
+                String vendorId = call.argument("vendorId");
+                String productId = call.argument("productId");
+                usbDevicesManager.clearThroughputProfile(vendorId, productId);
                 result.success(true);
                 break;
             }
+            case "getPendingJobs":
+                result.success(usbDevicesManager.getPendingJobs());
+                break;
+            case "cancelPendingJob": {
+                Number id = call.argument("id");
+                usbDevicesManager.cancelPendingJob(id.longValue(), result::success);
+                break;
+            }
+            case "getSpoolStats":
+                result.success(usbDevicesManager.getSpoolStats());
+                break;
             case "isConnected": {
                 String vendorId = call.argument("vendorId");
                 String productId = call.argument("productId");
@@ -89,6 +157,35 @@ public class FlutterThermalPrinterPlugin implements FlutterPlugin, MethodCallHan
                 result.success(true);
                 break;
             }
+            case "setWarmUpEnabled": {
+                Boolean enabled = call.argument("enabled");
+                usbDevicesManager.setWarmUpEnabled(Boolean.TRUE.equals(enabled));
+                result.success(true);
+                break;
+            }
+            case "getRecentCalls": {
+                String number = call.argument("number");
+                Integer limit = call.argument("limit");
+                result.success(usbDevicesManager.getRecentCalls(number, limit != null ? limit : Integer.MAX_VALUE));
+                break;
+            }
+            case "startForegroundService": {
+                String title = call.argument("title");
+                String text = call.argument("text");
+                PrinterForegroundService.start(context, title, text, error -> {
+                    if (error != null) {
+                        result.error("FOREGROUND_SERVICE_FAILED", error, null);
+                    } else {
+                        result.success(true);
+                    }
+                });
+                break;
+            }
+            case "stopForegroundService": {
+                PrinterForegroundService.stop(context);
+                result.success(true);
+                break;
+            }
             case "stopListening": {
                 usbDevicesManager.stopListening();
                 result.success(true);
@@ -105,5 +202,12 @@ public class FlutterThermalPrinterPlugin implements FlutterPlugin, MethodCallHan
         channel.setMethodCallHandler(null);
         deviceEventChannel.setStreamHandler(null);
         callerIdEventChannel.setStreamHandler(null);
+        warmUpEventChannel.setStreamHandler(null);
+        // Detach this engine's sinks from the shared manager; the last holder shuts it down
+        deviceStreamHandler.onCancel(null);
+        callerIdStreamHandler.onCancel(null);
+        warmUpStreamHandler.onCancel(null);
+        usbDevicesManager = null;
+        PrinterHub.release();
     }
 }
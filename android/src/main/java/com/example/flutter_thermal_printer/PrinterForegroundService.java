@@ -0,0 +1,146 @@
+package com.example.flutter_thermal_printer;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+
+import com.example.flutter_thermal_printer.utils.AppLogger;
+
+import java.util.ArrayDeque;
+
+/**
+ * Optional foreground service that holds the shared {@link PrinterHub} manager, so printing and
+ * caller-ID listening keep running while the UI is in the background or its engine is detached.
+ */
+public class PrinterForegroundService extends Service {
+    static final String EXTRA_TITLE = "title";
+    static final String EXTRA_TEXT = "text";
+    private static final String CHANNEL_ID = "flutter_thermal_printer";
+    private static final int NOTIFICATION_ID = 0x5052;
+
+    private static final String TAG = "FPP";
+
+    // Callers of start() waiting for their onStartCommand, oldest first; main thread only
+    private static final ArrayDeque<StartCallback> pendingStarts = new ArrayDeque<>();
+
+    private boolean holdingHub = false;
+
+    public interface StartCallback {
+        // error is null once the service is in the foreground
+        void onComplete(String error);
+    }
+
+    //    Must be called on the main thread. The callback runs there too, once the service is in the
+    //    foreground or with the reason it could not get there.
+    static void start(Context context, String title, String text, StartCallback callback) {
+        Intent intent = new Intent(context, PrinterForegroundService.class);
+        intent.putExtra(EXTRA_TITLE, title);
+        intent.putExtra(EXTRA_TEXT, text);
+        pendingStarts.add(callback);
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                context.startForegroundService(intent);
+            } else {
+                context.startService(intent);
+            }
+        } catch (IllegalStateException | SecurityException e) {
+            // ForegroundServiceStartNotAllowedException (an IllegalStateException) on API 31+ when the
+            // app is in the background, IllegalStateException for background starts on API 26+
+            AppLogger.e(TAG, "Could not start the printer foreground service", e);
+            pendingStarts.removeLastOccurrence(callback);
+            callback.onComplete(e.toString());
+        }
+    }
+
+    static void stop(Context context) {
+        context.stopService(new Intent(context, PrinterForegroundService.class));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        PrinterHub.acquire(this);
+        holdingHub = true;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String title = intent != null ? intent.getStringExtra(EXTRA_TITLE) : null;
+        String text = intent != null ? intent.getStringExtra(EXTRA_TEXT) : null;
+        Notification notification = buildNotification(title != null ? title : "Printer service", text != null ? text : "Listening for printers and calls");
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
+            } else {
+                startForeground(NOTIFICATION_ID, notification);
+            }
+        } catch (IllegalStateException | SecurityException e) {
+            // SecurityException on API 34+ when the connectedDevice prerequisites (e.g. a USB permission)
+            // are missing, ForegroundServiceStartNotAllowedException on API 31+ from the background.
+            // Uncaught, either would kill the process.
+            AppLogger.e(TAG, "Could not move the printer service to the foreground", e);
+            finishStart(intent, e.toString());
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        finishStart(intent, null);
+        return START_STICKY;
+    }
+
+    // A sticky restart by the system redelivers a null intent and has no caller waiting
+    private static void finishStart(Intent intent, String error) {
+        if (intent == null) {
+            return;
+        }
+        StartCallback callback = pendingStarts.poll();
+        if (callback != null) {
+            callback.onComplete(error);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        // Stopped before a queued start command was delivered
+        StartCallback callback;
+        while ((callback = pendingStarts.poll()) != null) {
+            callback.onComplete("Printer service was stopped before it started");
+        }
+        if (holdingHub) {
+            PrinterHub.release();
+            holdingHub = false;
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private Notification buildNotification(String title, String text) {
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            notificationManager.createNotificationChannel(new NotificationChannel(CHANNEL_ID, "Printer service", NotificationManager.IMPORTANCE_LOW));
+            builder = new Notification.Builder(this, CHANNEL_ID);
+        } else {
+            builder = new Notification.Builder(this);
+        }
+        builder.setContentTitle(title)
+                .setContentText(text)
+                .setSmallIcon(getApplicationInfo().icon)
+                .setOngoing(true);
+        Intent launchIntent = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        if (launchIntent != null) {
+            builder.setContentIntent(PendingIntent.getActivity(this, 0, launchIntent, PendingIntent.FLAG_IMMUTABLE));
+        }
+        return builder.build();
+    }
+}
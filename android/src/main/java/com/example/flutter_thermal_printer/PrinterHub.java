@@ -0,0 +1,129 @@
+package com.example.flutter_thermal_printer;
+
+import android.content.Context;
+
+import com.example.flutter_thermal_printer.spool.PrintSpool;
+import com.example.flutter_thermal_printer.utils.AppLogger;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Process-wide owner of the {@link UsbDevicesManager} and its print spool.
+ * <p>
+ * Every Flutter engine the plugin attaches to (main UI, background isolates, add-to-app engines)
+ * and the optional {@link PrinterForegroundService} acquire the same manager, so USB interfaces,
+ * the caller-ID reader, warm connections and the spool exist once per process. The manager is
+ * shut down when the last holder releases it. The spool is opened and recovered on a background
+ * thread, and closed on one once the work still in flight has finished, so those jobs are not
+ * replayed again on the next launch. Acquiring never blocks on that: a manager created while the
+ * previous one is still closing starts at once, and its device work waits for the old one.
+ */
+final class PrinterHub {
+    private static final String TAG = "FPP";
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private static UsbDevicesManager manager;
+    private static PrintSpool spool;
+    private static int holders;
+    private static Thread spoolThread;
+    private static Thread shutdownThread;
+
+    private PrinterHub() {
+    }
+
+    static synchronized UsbDevicesManager acquire(Context context) {
+        if (manager == null) {
+            // Called on the main thread, so a previous manager still finishing its work (up to
+            // SHUTDOWN_TIMEOUT_MS) is never waited for here: the new one's device work and spool
+            // wait for it on background threads instead
+            Thread previous = shutdownThread;
+            shutdownThread = null;
+            Context appContext = context.getApplicationContext();
+            manager = new UsbDevicesManager(appContext);
+            manager.runAfter(previous);
+            if (manager.isWarmUpEnabled()) {
+                manager.startWarmUp();
+            }
+            openSpool(manager, new File(appContext.getFilesDir(), "print_spool"), previous);
+        }
+        holders++;
+        AppLogger.d(TAG, "PrinterHub acquired, " + holders + " holders");
+        return manager;
+    }
+
+    // Recovery reads every segment and fsyncs the jobs it copies forward, so it runs off the calling
+    // (main) thread, after the previous manager (if any) has closed the directory. Until it finishes,
+    // prints go out unspooled; replay starts once it is open.
+    private static void openSpool(final UsbDevicesManager owner, final File dir, final Thread previous) {
+        spoolThread = new Thread(() -> {
+            PrintSpool opened;
+            try {
+                if (previous != null) {
+                    previous.join();
+                }
+                opened = new PrintSpool(dir);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                AppLogger.e(TAG, "Failed to open print spool", e);
+                return;
+            }
+            synchronized (PrinterHub.class) {
+                if (manager == owner) {
+                    spool = opened;
+                    owner.setSpool(opened);
+                    owner.replayPendingJobs();
+                    return;
+                }
+            }
+            // Released while recovering; the shutdown thread waits for this one, so nobody else has the directory
+            try {
+                opened.close();
+            } catch (IOException e) {
+                AppLogger.e(TAG, "Failed to close print spool", e);
+            }
+        }, "PrintSpoolOpen");
+        spoolThread.start();
+    }
+
+    static synchronized void release() {
+        if (holders == 0) {
+            return;
+        }
+        holders--;
+        AppLogger.d(TAG, "PrinterHub released, " + holders + " holders");
+        if (holders > 0) {
+            return;
+        }
+        final UsbDevicesManager closing = manager;
+        final PrintSpool closingSpool = spool;
+        final Thread opening = spoolThread;
+        manager = null;
+        spool = null;
+        spoolThread = null;
+        closing.shutdown();
+        shutdownThread = new Thread(() -> {
+            try {
+                if (opening != null) {
+                    opening.join();
+                }
+                if (!closing.awaitTermination(SHUTDOWN_TIMEOUT_MS)) {
+                    AppLogger.w(TAG, "Printer work still running after " + SHUTDOWN_TIMEOUT_MS + "ms, closing spool anyway");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closing.setSpool(null);
+            if (closingSpool != null) {
+                try {
+                    closingSpool.close();
+                } catch (IOException e) {
+                    AppLogger.e(TAG, "Failed to close print spool", e);
+                }
+            }
+        }, "PrinterHubShutdown");
+        shutdownThread.start();
+    }
+}
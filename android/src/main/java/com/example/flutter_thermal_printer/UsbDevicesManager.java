@@ -2,12 +2,26 @@ package com.example.flutter_thermal_printer;
 
 import static android.content.Context.USB_SERVICE;
 
+import com.example.flutter_thermal_printer.callerid.CallHistory;
+import com.example.flutter_thermal_printer.callerid.CallerIdDeduper;
+import com.example.flutter_thermal_printer.callerid.CallerIdRecord;
+import com.example.flutter_thermal_printer.codec.EventCodec;
+import com.example.flutter_thermal_printer.pacing.PacedWriter;
+import com.example.flutter_thermal_printer.pacing.ThroughputCalibrator;
+import com.example.flutter_thermal_printer.pacing.ThroughputProfile;
+import com.example.flutter_thermal_printer.pacing.ThroughputProfileStore;
+import com.example.flutter_thermal_printer.raster.BandedRasterEncoder;
+import com.example.flutter_thermal_printer.raster.BitmapPixelSource;
+import com.example.flutter_thermal_printer.spool.PrintJob;
+import com.example.flutter_thermal_printer.spool.PrintSpool;
+import com.example.flutter_thermal_printer.spool.PrintTransport;
 import com.example.flutter_thermal_printer.utils.AppLogger;
 
 import android.annotation.SuppressLint;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.hardware.usb.UsbConstants;
 import android.hardware.usb.UsbInterface;
 import android.hardware.usb.UsbDevice;
@@ -15,13 +29,29 @@ import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbEndpoint;
 import android.hardware.usb.UsbManager;
 import android.os.Build;
+import android.os.SystemClock;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.BroadcastReceiver;
 import android.content.IntentFilter;
@@ -35,9 +65,8 @@ import android.os.Looper;
 
 import io.flutter.plugin.common.EventChannel;
 
-public class UsbDevicesManager {
-    @SuppressLint("StaticFieldLeak")
-    private static Context context;
+public class UsbDevicesManager implements PrintTransport {
+    private final Context context;
 
     private static final String ACTION_USB_PERMISSION = "com.example.flutter_thermal_printer.USB_PERMISSION";
     private static final String ACTION_USB_ATTACHED = "android.hardware.usb.action.USB_DEVICE_ATTACHED";
@@ -45,29 +74,208 @@ public class UsbDevicesManager {
     private static final String TAG = "FPP";
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
-    private EventChannel.EventSink deviceEventSink;
-    private EventChannel.EventSink callerIdEventSink;
+    // One sink per attached Flutter engine; all engines share this manager
+    private final List<EventChannel.EventSink> deviceEventSinks = new CopyOnWriteArrayList<>();
+    private final List<EventChannel.EventSink> callerIdEventSinks = new CopyOnWriteArrayList<>();
 
     private BroadcastReceiver usbStateChangeReceiver;
 
-    private Thread readThread;
+    // The current caller-ID reader; a reader exits as soon as it is no longer this thread
+    private volatile Thread readThread;
     private UsbDeviceConnection connection;
     private UsbInterface mIntf;
 
     private UsbEndpoint rEndpoint;
     private UsbEndpoint wEndpoint;
-    private boolean reading = false;
+    private volatile boolean reading = false;
     private static final int TIMEOUT = 3000;
+    private static final int PRINT_TIMEOUT = 5000;
+    private static final int BATCH_THREADS = 4;
+    private final ExecutorService batchExecutor = Executors.newFixedThreadPool(BATCH_THREADS);
+    private final Map<String, DeviceLane> lanes = new ConcurrentHashMap<>();
+    // Image bands are dithered here while the batch thread streams finished ones to the printer
+    private static final int RASTER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int RASTER_MAX_IN_FLIGHT = RASTER_THREADS * 2;
+    private final ExecutorService rasterExecutor = Executors.newFixedThreadPool(RASTER_THREADS);
+    private final ThroughputProfileStore profileStore;
+    private final Map<String, PacedWriter> pacers = new ConcurrentHashMap<>();
     private static int SLEEP = 100;
     private static final String ACK = "ACK\r\n";
     private static final String DCK = "DCK\r\n";
-    private static PendingIntent mPermissionIntent;
+    private final PendingIntent mPermissionIntent;
+    private volatile PrintSpool spool;
+    private Thread replayThread;
+
+    private static final String PREFS_NAME = "flutter_thermal_printer";
+    private static final String PREF_WARM_UP = "warmUpEnabled";
+    private final ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, PrinterConnection> warmConnections = new ConcurrentHashMap<>();
+    private BroadcastReceiver warmUpReceiver;
+    private final List<EventChannel.EventSink> warmUpEventSinks = new CopyOnWriteArrayList<>();
+    private Map<String, Object> lastWarmUpReport;
+
+    // A printer connection with its interface claimed and bulk OUT endpoint resolved.
+    // Warm connections are opened ahead of the first job and kept open; cold ones are closed after use.
+    // Calibrated models are written through their PacedWriter, others unpaced in transfers of at most 16 KB.
+    private static class PrinterConnection {
+        final UsbDeviceConnection connection;
+        final UsbInterface intf;
+        final UsbEndpoint endpoint;
+        final boolean warm;
+        volatile PacedWriter pacer;
+
+        PrinterConnection(UsbDeviceConnection connection, UsbInterface intf, UsbEndpoint endpoint, boolean warm, PacedWriter pacer) {
+            this.connection = connection;
+            this.intf = intf;
+            this.endpoint = endpoint;
+            this.warm = warm;
+            this.pacer = pacer;
+        }
+
+        // timeoutMs of 0 picks the profile's per-chunk timeout, or PRINT_TIMEOUT when uncalibrated
+        // Returns the bytes sent, fewer than data.length if a transfer failed part-way, or -1 if none were
+        synchronized int write(byte[] data, int timeoutMs) {
+            PacedWriter paced = pacer;
+            if (paced != null) {
+                return paced.write(this::transfer, data, timeoutMs);
+            }
+            return PacedWriter.writeUnpaced(this::transfer, data, timeoutMs > 0 ? timeoutMs : PRINT_TIMEOUT);
+        }
+
+        int transfer(byte[] data, int offset, int length, int timeoutMs) {
+            return connection.bulkTransfer(endpoint, data, offset, length, timeoutMs);
+        }
+
+        synchronized void close() {
+            connection.releaseInterface(intf);
+            connection.close();
+        }
+    }
+
+    // Runs one device's work one task at a time, in submission order, on the shared batchExecutor.
+    // Every print, batch and calibration for a device goes through its lane, so two callers never
+    // interleave on a warm connection or open and claim the same interface at once.
+    // Print payloads are queued here before their task is submitted; the first task to run spools
+    // everything queued so far with one fsync, so a rush of jobs to one printer shares its commits.
+    private static class DeviceLane implements Executor {
+        private final Executor pool;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private final List<QueuedJob> unspooled = new ArrayList<>();
+        private boolean running;
+
+        DeviceLane(Executor pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+            if (!running) {
+                running = true;
+                try {
+                    pool.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    running = false;
+                    tasks.clear();
+                    unspooled.clear();
+                    throw e;
+                }
+            }
+        }
+
+        synchronized QueuedJob queue(byte[] data) {
+            QueuedJob job = new QueuedJob(data);
+            unspooled.add(job);
+            return job;
+        }
+
+        synchronized List<QueuedJob> takeUnspooled() {
+            List<QueuedJob> taken = new ArrayList<>(unspooled);
+            unspooled.clear();
+            return taken;
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    AppLogger.e(TAG, "Device task failed", e);
+                }
+            }
+        }
+    }
+
+    // A payload waiting on its lane; spooled is set (and job, if the spool is open) once it is durable
+    private static class QueuedJob {
+        final byte[] data;
+        PrintJob job;
+        boolean spooled;
+
+        QueuedJob(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    // Set when this manager replaces one that is still finishing its work (see PrinterHub). Device work
+    // waits for it on background threads, so two managers never drive the same printer at once.
+    private volatile Thread predecessor;
+    // Lanes start their tasks only once the predecessor is done
+    private final Executor laneExecutor = task -> batchExecutor.execute(() -> {
+        awaitPredecessor();
+        task.run();
+    });
+
+    void runAfter(Thread previous) {
+        predecessor = previous;
+    }
+
+    private void awaitPredecessor() {
+        Thread previous = predecessor;
+        if (previous == null) {
+            return;
+        }
+        try {
+            previous.join();
+            predecessor = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private DeviceLane laneFor(String vendorId, String productId, String deviceId) {
+        String key = deviceKey(vendorId, productId, deviceId);
+        DeviceLane lane = lanes.get(key);
+        if (lane == null) {
+            DeviceLane created = new DeviceLane(laneExecutor);
+            lane = lanes.putIfAbsent(key, created);
+            if (lane == null) {
+                lane = created;
+            }
+        }
+        return lane;
+    }
 
     public EventChannel.StreamHandler getDeviceStreamHandler() {
         return new EventChannel.StreamHandler() {
+            private EventChannel.EventSink sink;
+
             @Override
             public void onListen(Object args, EventChannel.EventSink events) {
-                deviceEventSink = events;
+                removeSink(deviceEventSinks, sink);
+                sink = events;
+                deviceEventSinks.add(events);
+                if (usbStateChangeReceiver != null) {
+                    return;
+                }
                 createUsbStateChangeReceiver();
                 IntentFilter filter = new IntentFilter();
                 filter.addAction(ACTION_USB_ATTACHED);
@@ -82,26 +290,82 @@ public class UsbDevicesManager {
 
             @Override
             public void onCancel(Object args) {
-                context.unregisterReceiver(usbStateChangeReceiver);
-                deviceEventSink = null;
+                removeSink(deviceEventSinks, sink);
+                sink = null;
+                if (deviceEventSinks.isEmpty()) {
+                    unregisterUsbStateChangeReceiver();
+                }
             }
         };
     }
 
     public EventChannel.StreamHandler getCallerIdStreamHandler() {
         return new EventChannel.StreamHandler() {
+            private EventChannel.EventSink sink;
+
+            @Override
+            public void onListen(Object args, EventChannel.EventSink events) {
+                removeSink(callerIdEventSinks, sink);
+                sink = events;
+                callerIdEventSinks.add(events);
+            }
+
+            @Override
+            public void onCancel(Object args) {
+                removeSink(callerIdEventSinks, sink);
+                sink = null;
+            }
+        };
+    }
+
+    public EventChannel.StreamHandler getWarmUpStreamHandler() {
+        return new EventChannel.StreamHandler() {
+            private EventChannel.EventSink sink;
+
             @Override
             public void onListen(Object args, EventChannel.EventSink events) {
-                callerIdEventSink = events;
+                removeSink(warmUpEventSinks, sink);
+                sink = events;
+                warmUpEventSinks.add(events);
+                // Warm-up usually finishes before Dart subscribes, so replay the last report
+                Map<String, Object> report = lastWarmUpReport;
+                if (report != null) {
+                    mainHandler.post(() -> events.success(report));
+                }
             }
 
             @Override
             public void onCancel(Object args) {
-                callerIdEventSink = null;
+                removeSink(warmUpEventSinks, sink);
+                sink = null;
             }
         };
     }
 
+    private static void removeSink(List<EventChannel.EventSink> sinks, EventChannel.EventSink sink) {
+        if (sink != null) {
+            sinks.remove(sink);
+        }
+    }
+
+    private void emit(List<EventChannel.EventSink> sinks, Object event) {
+        if (sinks.isEmpty()) {
+            return;
+        }
+        mainHandler.post(() -> {
+            for (EventChannel.EventSink sink : sinks) {
+                sink.success(event);
+            }
+        });
+    }
+
+    private void unregisterUsbStateChangeReceiver() {
+        if (usbStateChangeReceiver != null) {
+            context.unregisterReceiver(usbStateChangeReceiver);
+            usbStateChangeReceiver = null;
+        }
+    }
+
     private void createUsbStateChangeReceiver() {
         usbStateChangeReceiver = new BroadcastReceiver() {
             @SuppressLint("LongLogTag")
@@ -126,6 +390,9 @@ public class UsbDevicesManager {
                         boolean permissionGranted = intent.getBooleanExtra(UsbManager.EXTRA_PERMISSION_GRANTED, false);
                         if (permissionGranted) {
                             Log.d(TAG, "Permission granted for device " + device);
+                            if (isWarmUpEnabled()) {
+                                warmUp();
+                            }
                             sendDevice(device, false);
                         } else {
                             Log.d(TAG, "Permission denied for device " + device);
@@ -157,45 +424,30 @@ public class UsbDevicesManager {
                 }
             }
         }
-        boolean isConnected = isConnected(String.valueOf(device.getVendorId()), String.valueOf(device.getProductId()), String.valueOf(device.getDeviceId()));
-        HashMap<String, Object> deviceData = new HashMap<>();
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            deviceData.put("name", device.getProductName());
-        }
-        deviceData.put("vendorId", String.valueOf(device.getVendorId()));
-        deviceData.put("productId", String.valueOf(device.getProductId()));
-        deviceData.put("deviceId", String.valueOf(device.getDeviceId()));
-        deviceData.put("connected", isConnected);
-        deviceData.put("isRemove", isRemove);
-        AppLogger.d(TAG, "Sending device data: " + deviceData);
-        if (deviceEventSink != null) {
-            mainHandler.post(() -> deviceEventSink.success(deviceData));
-        }
+        boolean isConnected = !isRemove && ((UsbManager) context.getSystemService(USB_SERVICE)).hasPermission(device);
+        String name = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? device.getProductName() : null;
+        byte[] deviceData = EventCodec.encodeDevice(device.getVendorId(), device.getProductId(), device.getDeviceId(), name, isConnected, isRemove);
+        AppLogger.d(TAG, "Sending device data: " + name + " " + device.getVendorId() + ":" + device.getProductId() + ":" + device.getDeviceId() + " connected=" + isConnected + " isRemove=" + isRemove);
+        emit(deviceEventSinks, deviceData);
 
     }
 
     UsbDevicesManager(Context context) {
-        UsbDevicesManager.context = context;
+        this.context = context;
+        profileStore = new ThroughputProfileStore(context);
         mPermissionIntent = PendingIntent.getActivity(context, 0, new Intent(ACTION_USB_PERMISSION), PendingIntent.FLAG_IMMUTABLE);
     }
 
-    public List<Map<String, Object>> getUsbDevicesList() {
+    public byte[] getUsbDevicesList() {
         UsbManager m = (UsbManager) context.getSystemService(USB_SERVICE);
         HashMap<String, UsbDevice> usbDevices = m.getDeviceList();
-        List<Map<String, Object>> data = new ArrayList<Map<String, Object>>();
-        for (Map.Entry<String, UsbDevice> entry : usbDevices.entrySet()) {
-            UsbDevice device = entry.getValue();
+        EventCodec.DeviceWriter data = new EventCodec.DeviceWriter(EventCodec.TYPE_DEVICE_LIST, usbDevices.size());
+        for (UsbDevice device : usbDevices.values()) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                HashMap<String, Object> deviceData = new HashMap<String, Object>();
-                deviceData.put("vendorId", String.valueOf(device.getVendorId()));
-                deviceData.put("name", device.getProductName());
-                deviceData.put("productId", String.valueOf(device.getProductId()));
-                deviceData.put("deviceId", String.valueOf(device.getDeviceId()));
-                deviceData.put("connected", m.hasPermission(device));
-                data.add(deviceData);
+                data.device(device.getVendorId(), device.getProductId(), device.getDeviceId(), device.getProductName(), m.hasPermission(device), false);
             }
         }
-        return data;
+        return data.finish();
     }
 
     private String connectionVendorId;
@@ -224,39 +476,690 @@ public class UsbDevicesManager {
         }
     }
 
-    //    Print text on the printer
-    public void printText(String vendorId, String productId, String deviceId, List<Integer> bytes) {
+    void setSpool(PrintSpool spool) {
+        this.spool = spool;
+    }
+
+    public interface PrintCallback {
+        void onComplete(boolean printed);
+    }
+
+    //    Print text on the printer. Spooling (an fsync) and the transfer run on the device's lane, never the
+    //    platform thread; the callback runs on the main thread with whether every byte was written.
+    //    Either way the outcome reaches Dart, so the job leaves the spool: only jobs whose reply was lost
+    //    with the process are replayed, and a caller retrying on false never prints the receipt twice.
+    public void printText(String vendorId, String productId, String deviceId, List<Integer> bytes, PrintCallback callback) {
+        byte[] data = new byte[bytes.size()];
+        for (int i = 0; i < bytes.size(); i++) {
+            data[i] = bytes.get(i).byteValue();
+        }
+        DeviceLane lane = laneFor(vendorId, productId, deviceId);
+        QueuedJob queued = lane.queue(data);
+        lane.execute(() -> {
+            boolean printed = false;
+            try {
+                spoolQueued(lane, queued, vendorId, productId, deviceId);
+                int written = writeToDevice(vendorId, productId, deviceId, data);
+                printed = written == data.length;
+            } catch (RuntimeException e) {
+                AppLogger.e(TAG, "printText failed", e);
+            }
+            finishJob(queued.job, printed);
+            boolean result = printed;
+            mainHandler.post(() -> callback.onComplete(result));
+        });
+    }
+
+    public interface BatchCallback {
+        void onComplete(List<Map<String, Object>> results);
+    }
+
+    //    Print many jobs in one call: concurrently across devices, in order within a device (each device's
+    //    share runs on its lane, so it is also ordered against other batches and printText calls).
+    //    Each job is {vendorId, productId, deviceId, data, timeoutMs?}; each result is {bytesWritten, latencyMicros, error}.
+    public void printBatch(List<Map<String, Object>> jobs, BatchCallback callback) {
+        Map<String, List<Integer>> jobsByDevice = new LinkedHashMap<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            Map<String, Object> job = jobs.get(i);
+            String key = deviceKey((String) job.get("vendorId"), (String) job.get("productId"), (String) job.get("deviceId"));
+            List<Integer> indices = jobsByDevice.get(key);
+            if (indices == null) {
+                indices = new ArrayList<>();
+                jobsByDevice.put(key, indices);
+            }
+            indices.add(i);
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(Collections.nCopies(jobs.size(), (Map<String, Object>) null));
+        if (jobsByDevice.isEmpty()) {
+            mainHandler.post(() -> callback.onComplete(results));
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(jobsByDevice.size());
+        for (List<Integer> indices : jobsByDevice.values()) {
+            Map<String, Object> first = jobs.get(indices.get(0));
+            DeviceLane lane = laneFor((String) first.get("vendorId"), (String) first.get("productId"), (String) first.get("deviceId"));
+            List<QueuedJob> queued = new ArrayList<>(indices.size());
+            for (int index : indices) {
+                queued.add(lane.queue((byte[]) jobs.get(index).get("data")));
+            }
+            lane.execute(() -> {
+                try {
+                    printDeviceJobs(lane, jobs, indices, queued, results);
+                } catch (Exception e) {
+                    AppLogger.e(TAG, "printBatch failed", e);
+                    for (int i = 0; i < indices.size(); i++) {
+                        if (results.get(indices.get(i)) == null) {
+                            finishJob(queued.get(i).job, false);
+                            results.set(indices.get(i), batchResult(-1, 0, e.toString()));
+                        }
+                    }
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    mainHandler.post(() -> callback.onComplete(results));
+                }
+            });
+        }
+    }
+
+    //    Runs one device's share of a batch over a single connection. The whole share is spooled up
+    //    front with one fsync; each job then leaves the spool once its result is set.
+    private void printDeviceJobs(DeviceLane lane, List<Map<String, Object>> jobs, List<Integer> indices,
+                                 List<QueuedJob> queued, List<Map<String, Object>> results) {
+        Map<String, Object> first = jobs.get(indices.get(0));
+        String vendorId = (String) first.get("vendorId");
+        String productId = (String) first.get("productId");
+        String deviceId = (String) first.get("deviceId");
+        spoolQueued(lane, queued.get(0), vendorId, productId, deviceId);
+        PrinterConnection printer = openPrinter(vendorId, productId, deviceId);
+        try {
+            for (int i = 0; i < indices.size(); i++) {
+                int index = indices.get(i);
+                Map<String, Object> job = jobs.get(index);
+                byte[] data = (byte[]) job.get("data");
+                Integer timeoutMs = (Integer) job.get("timeoutMs");
+                int timeout = timeoutMs != null ? timeoutMs : 0;
+
+                long start = System.nanoTime();
+                int written = -1;
+                String error = null;
+                if (printer != null) {
+                    written = printer.write(data, timeout);
+                    // A stale warm connection fails on the first transfer; retry on a fresh one only
+                    // when nothing was sent, since resending a partly printed job would print it twice
+                    if (written < 0 && printer.warm) {
+                        dropWarmConnection(printer);
+                        printer = openPrinter(vendorId, productId, deviceId);
+                        if (printer != null) {
+                            written = printer.write(data, timeout);
+                        }
+                    }
+                }
+                long latencyMicros = (System.nanoTime() - start) / 1000;
+                if (printer == null) {
+                    error = "Device not found or permission not granted";
+                } else if (written < 0) {
+                    error = "bulkTransfer failed";
+                } else if (written != data.length) {
+                    error = "Transfer failed after " + written + " of " + data.length + " bytes";
+                }
+                finishJob(queued.get(i).job, error == null);
+                results.set(index, batchResult(written, latencyMicros, error));
+            }
+        } finally {
+            if (printer != null) {
+                releasePrinter(printer);
+            }
+        }
+    }
+
+    private static Map<String, Object> batchResult(int bytesWritten, long latencyMicros, String error) {
+        HashMap<String, Object> result = new HashMap<>();
+        result.put("bytesWritten", bytesWritten);
+        result.put("latencyMicros", latencyMicros);
+        result.put("error", error);
+        return result;
+    }
+
+    //    Spools every payload queued on the lane so far, including later callers' that are already
+    //    waiting, in one appendAll. Runs on the lane, so payloads are spooled in submission order.
+    private void spoolQueued(DeviceLane lane, QueuedJob queued, String vendorId, String productId, String deviceId) {
+        if (queued.spooled) {
+            return;
+        }
+        List<QueuedJob> batch = lane.takeUnspooled();
+        PrintSpool spool = this.spool;
+        if (spool != null && !batch.isEmpty()) {
+            List<byte[]> payloads = new ArrayList<>(batch.size());
+            for (QueuedJob job : batch) {
+                payloads.add(job.data);
+            }
+            try {
+                List<PrintJob> spooled = spool.appendAll(vendorId, productId, deviceId, payloads);
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).job = spooled.get(i);
+                }
+            } catch (IOException e) {
+                AppLogger.e(TAG, "Failed to spool print jobs, printing without durability", e);
+            }
+        }
+        for (QueuedJob job : batch) {
+            job.spooled = true;
+        }
+    }
+
+    //    Takes a job out of the spool once its outcome has been reported: completed if it printed,
+    //    cancelled if the caller was told it failed (retrying is then up to the caller)
+    private void finishJob(PrintJob job, boolean printed) {
+        PrintSpool spool = this.spool;
+        if (job == null || spool == null) {
+            return;
+        }
+        try {
+            if (printed) {
+                spool.complete(job.id);
+            } else {
+                spool.cancel(job.id);
+            }
+        } catch (IOException e) {
+            AppLogger.e(TAG, "Failed to take print job " + job.id + " out of the spool", e);
+        }
+    }
+
+    //    Jobs spooled but not yet printed or reported: those being sent right now and those left over from
+    //    a previous run that replay could not deliver. Each is {id, vendorId, productId, deviceId, size}.
+    public List<Map<String, Object>> getPendingJobs() {
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        PrintSpool spool = this.spool;
+        if (spool == null) {
+            return jobs;
+        }
+        for (PrintJob job : spool.pending()) {
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("id", job.id);
+            map.put("vendorId", job.vendorId);
+            map.put("productId", job.productId);
+            map.put("deviceId", job.deviceId);
+            map.put("size", job.data.length);
+            jobs.add(map);
+        }
+        return jobs;
+    }
+
+    public interface CancelCallback {
+        void onComplete(boolean cancelled);
+    }
+
+    //    Forgets a pending job so it is never replayed; false if it was already printed, reported or dropped.
+    //    The spool write (and any compaction it triggers) runs off the platform thread.
+    public void cancelPendingJob(long id, CancelCallback callback) {
+        PrintSpool spool = this.spool;
+        if (spool == null) {
+            callback.onComplete(false);
+            return;
+        }
+        batchExecutor.execute(() -> {
+            boolean cancelled = false;
+            try {
+                cancelled = spool.cancel(id);
+            } catch (IOException e) {
+                AppLogger.e(TAG, "Failed to cancel print job " + id, e);
+            }
+            boolean result = cancelled;
+            mainHandler.post(() -> callback.onComplete(result));
+        });
+    }
+
+    //    {ready, pending, dropped}: whether the spool is open yet, jobs pending in it, and jobs dropped to stay
+    //    within its limits since it was opened
+    public Map<String, Object> getSpoolStats() {
+        HashMap<String, Object> stats = new HashMap<>();
+        PrintSpool spool = this.spool;
+        stats.put("ready", spool != null);
+        stats.put("pending", spool != null ? spool.pending().size() : 0);
+        stats.put("dropped", spool != null ? spool.droppedCount() : 0L);
+        return stats;
+    }
+
+    //    Used by spool replay: queued on the device's lane behind any work already there, then waits for it
+    @Override
+    public int write(PrintJob job) {
+        FutureTask<Integer> task = new FutureTask<>(() -> writeToDevice(job.vendorId, job.productId, job.deviceId, job.data));
+        try {
+            laneFor(job.vendorId, job.productId, job.deviceId).execute(task);
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (ExecutionException | RejectedExecutionException e) {
+            AppLogger.e(TAG, "Failed to replay " + job, e);
+            return -1;
+        }
+    }
+
+    //    Re-send jobs that were spooled but not printed before the process died. Only jobs recovered
+    //    when the spool was opened are replayed, so a job printText is sending right now never prints twice.
+    public void replayPendingJobs() {
+        if (spool == null) {
+            return;
+        }
+        PrintSpool replaySpool = spool;
+        replayThread = new Thread(() -> {
+            try {
+                int delivered = replaySpool.replay(this);
+                AppLogger.d(TAG, "Replayed " + delivered + " spooled print jobs, " + replaySpool.pending().size() + " still pending");
+            } catch (IOException e) {
+                AppLogger.e(TAG, "Failed to replay spooled print jobs", e);
+            }
+        }, "PrintSpoolReplay");
+        replayThread.start();
+    }
+
+    public boolean isWarmUpEnabled() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getBoolean(PREF_WARM_UP, false);
+    }
+
+    //    Opt in to (or out of) pre-opening authorised printers at attach; the choice is persisted for the next launch
+    public void setWarmUpEnabled(boolean enabled) {
+        SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        editor.putBoolean(PREF_WARM_UP, enabled).apply();
+        if (enabled) {
+            startWarmUp();
+        } else {
+            stopWarmUp();
+        }
+    }
+
+    public void startWarmUp() {
+        if (warmUpReceiver == null) {
+            warmUpReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    UsbDevice device = intent.getParcelableExtra(UsbManager.EXTRA_DEVICE);
+                    if (Objects.equals(intent.getAction(), ACTION_USB_ATTACHED)) {
+                        warmUp();
+                    } else if (Objects.equals(intent.getAction(), ACTION_USB_DETACHED) && device != null) {
+                        closeWarmConnection(deviceKey(device));
+                    }
+                }
+            };
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(ACTION_USB_ATTACHED);
+            filter.addAction(ACTION_USB_DETACHED);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                context.registerReceiver(warmUpReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
+            } else {
+                context.registerReceiver(warmUpReceiver, filter);
+            }
+        }
+        warmUp();
+    }
+
+    //    Closing runs on warmUpExecutor, after any warm-up pass already queued or running, so a pass
+    //    cannot open new connections once they have been closed
+    public void stopWarmUp() {
+        if (warmUpReceiver != null) {
+            context.unregisterReceiver(warmUpReceiver);
+            warmUpReceiver = null;
+        }
+        if (warmUpExecutor.isShutdown()) {
+            closeWarmConnections();
+        } else {
+            warmUpExecutor.execute(this::closeWarmConnections);
+        }
+    }
+
+    private void closeWarmConnections() {
+        for (String key : warmConnections.keySet()) {
+            closeWarmConnection(key);
+        }
+    }
+
+    //    Stops every reader, receiver and worker and closes all connections; the manager is unusable afterwards
+    public void shutdown() {
+        stopListening();
+        stopWarmUp();
+        unregisterUsbStateChangeReceiver();
+        deviceEventSinks.clear();
+        callerIdEventSinks.clear();
+        warmUpEventSinks.clear();
+        warmUpExecutor.shutdown();
+        batchExecutor.shutdown();
+        rasterExecutor.shutdown();
+    }
+
+    //    Waits for work still running after shutdown() (replay, prints, batches, images, warm-up) to finish,
+    //    so the spool can be closed without failing their completions. Returns false on timeout.
+    public boolean awaitTermination(long timeoutMs) throws InterruptedException {
+        long deadline = SystemClock.elapsedRealtime() + timeoutMs;
+        Thread replay = replayThread;
+        if (replay != null) {
+            replay.join(Math.max(1, deadline - SystemClock.elapsedRealtime()));
+            if (replay.isAlive()) {
+                return false;
+            }
+        }
+        // Lanes run on batchExecutor and image bands on rasterExecutor, so drain them in that order
+        for (ExecutorService executor : Arrays.asList(batchExecutor, rasterExecutor, warmUpExecutor)) {
+            if (!executor.awaitTermination(Math.max(0, deadline - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void warmUp() {
+        if (!warmUpExecutor.isShutdown()) {
+            warmUpExecutor.execute(this::runWarmUp);
+        }
+    }
+
+    //    Enumerate devices, find printer-class interfaces and pre-open the ones we already have permission for
+    private void runWarmUp() {
+        awaitPredecessor();
+        long start = SystemClock.elapsedRealtime();
+        UsbManager m = (UsbManager) context.getSystemService(USB_SERVICE);
+        int devices = 0;
+        int printers = 0;
+        int opened = 0;
+        for (UsbDevice device : m.getDeviceList().values()) {
+            devices++;
+            UsbInterface intf = findPrinterInterface(device);
+            if (intf == null) {
+                continue;
+            }
+            printers++;
+            String key = deviceKey(device);
+            if (warmConnections.containsKey(key)) {
+                opened++;
+                continue;
+            }
+            if (!m.hasPermission(device)) {
+                continue;
+            }
+            UsbDeviceConnection connection = m.openDevice(device);
+            if (connection == null) {
+                continue;
+            }
+            if (!connection.claimInterface(intf, true)) {
+                connection.close();
+                continue;
+            }
+            warmConnections.put(key, new PrinterConnection(connection, intf, findBulkOut(intf), true, pacerFor(device)));
+            opened++;
+        }
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        AppLogger.d(TAG, "Warm-up: " + devices + " devices, " + printers + " printers, " + opened + " warm connections in " + elapsed + "ms");
+
+        HashMap<String, Object> report = new HashMap<>();
+        report.put("devices", devices);
+        report.put("printers", printers);
+        report.put("warmConnections", opened);
+        report.put("elapsedMs", elapsed);
+        lastWarmUpReport = report;
+        emit(warmUpEventSinks, report);
+    }
+
+    private void closeWarmConnection(String key) {
+        PrinterConnection warm = warmConnections.remove(key);
+        if (warm != null) {
+            warm.close();
+        }
+    }
+
+    private static UsbInterface findPrinterInterface(UsbDevice device) {
+        for (int i = 0; i < device.getInterfaceCount(); i++) {
+            UsbInterface intf = device.getInterface(i);
+            if (intf.getInterfaceClass() == UsbConstants.USB_CLASS_PRINTER && findBulkOut(intf) != null) {
+                return intf;
+            }
+        }
+        return null;
+    }
+
+    private static UsbEndpoint findBulkOut(UsbInterface intf) {
+        for (int i = 0; i < intf.getEndpointCount(); i++) {
+            UsbEndpoint ep = intf.getEndpoint(i);
+            if (ep.getType() == UsbConstants.USB_ENDPOINT_XFER_BULK && ep.getDirection() == UsbConstants.USB_DIR_OUT) {
+                return ep;
+            }
+        }
+        return null;
+    }
+
+    private static String deviceKey(UsbDevice device) {
+        return deviceKey(String.valueOf(device.getVendorId()), String.valueOf(device.getProductId()), String.valueOf(device.getDeviceId()));
+    }
+
+    private static String deviceKey(String vendorId, String productId, String deviceId) {
+        return vendorId + ":" + productId + ":" + deviceId;
+    }
+
+    private int writeToDevice(String vendorId, String productId, String deviceId, byte[] data) {
+        PrinterConnection printer = openPrinter(vendorId, productId, deviceId);
+        if (printer == null) {
+            return -1;
+        }
+        int written;
+        try {
+            written = printer.write(data, 0);
+        } finally {
+            releasePrinter(printer);
+        }
+        // Only resend on a fresh connection when nothing went out; a partial write is reported as is
+        if (written < 0 && printer.warm) {
+            dropWarmConnection(printer);
+            return writeToDevice(vendorId, productId, deviceId, data);
+        }
+        return written;
+    }
+
+    //    Returns the warm connection for the device if there is one, otherwise opens and claims interface 0
+    private PrinterConnection openPrinter(String vendorId, String productId, String deviceId) {
+        PrinterConnection warm = warmConnections.get(deviceKey(vendorId, productId, deviceId));
+        if (warm != null) {
+            return warm;
+        }
+
         UsbManager m = (UsbManager) context.getSystemService(USB_SERVICE);
         UsbDevice device = findDevice(m, vendorId, productId, deviceId);
         if (device == null) {
-            return;
+            return null;
         }
         if (!m.hasPermission(device)) {
             m.requestPermission(device, mPermissionIntent);
         }
         if (!m.hasPermission(device)) {
-            return;
+            return null;
         }
         UsbDeviceConnection connection = m.openDevice(device);
 
         if (connection == null) {
-            return;
+            return null;
         }
-        connection.claimInterface(device.getInterface(0), true);
-        UsbEndpoint mBulkEndOut = null;
-        for (int i = 0; i < device.getInterface(0).getEndpointCount(); i++) {
-            if (device.getInterface(0).getEndpoint(i).getType() == UsbConstants.USB_ENDPOINT_XFER_BULK && device.getInterface(0).getEndpoint(i).getDirection() == UsbConstants.USB_DIR_OUT) {
-                mBulkEndOut = device.getInterface(0).getEndpoint(i);
-                break;
+        UsbInterface intf = device.getInterface(0);
+        if (!connection.claimInterface(intf, true)) {
+            AppLogger.e(TAG, "Failed to claim interface of " + deviceKey(device));
+            connection.close();
+            return null;
+        }
+        return new PrinterConnection(connection, intf, findBulkOut(intf), false, pacerFor(device));
+    }
+
+    //    One PacedWriter per device, so its estimate of what is still queued in the printer survives reconnects
+    private PacedWriter pacerFor(UsbDevice device) {
+        ThroughputProfile profile = profileStore.get(device.getVendorId(), device.getProductId());
+        String key = deviceKey(device);
+        if (profile == null) {
+            pacers.remove(key);
+            return null;
+        }
+        PacedWriter pacer = pacers.get(key);
+        if (pacer == null || pacer.profile() != profile) {
+            pacer = new PacedWriter(profile);
+            pacers.put(key, pacer);
+        }
+        return pacer;
+    }
+
+    public interface ImageCallback {
+        void onComplete(Map<String, Object> result, String error);
+    }
+
+    //    Print an encoded image (PNG/JPEG/WebP) as GS v 0 raster, scaled to width dots when width > 0.
+    //    Bands are scaled and dithered in parallel on rasterExecutor (decoding itself is serialised by the
+    //    region decoder) and written in order as soon as each is ready, so the printer starts feeding before
+    //    the rest of the image is encoded. Runs on the device's
+    //    lane and holds the connection for the whole image, so no other job can print in the middle of it.
+    //    Not spooled: the job is never materialised as one payload.
+    //    Result is {bytesWritten, bands, timeToFirstByteMicros, totalMicros}.
+    public void printImage(String vendorId, String productId, String deviceId, byte[] image, int width, int bandRows,
+                           ImageCallback callback) {
+        laneFor(vendorId, productId, deviceId).execute(() -> {
+            Map<String, Object> result = null;
+            String error;
+            try {
+                result = streamImage(vendorId, productId, deviceId, image, width, bandRows);
+                error = result == null ? "Device not found or permission not granted" : null;
+            } catch (IOException | RuntimeException e) {
+                AppLogger.e(TAG, "printImage failed", e);
+                error = e.getMessage() != null ? e.getMessage() : e.toString();
             }
+            Map<String, Object> stats = result;
+            String message = error;
+            mainHandler.post(() -> callback.onComplete(stats, message));
+        });
+    }
+
+    //    Returns null if the printer could not be opened
+    private Map<String, Object> streamImage(String vendorId, String productId, String deviceId, byte[] image, int width,
+                                            int bandRows) throws IOException {
+        long start = System.nanoTime();
+        PrinterConnection printer = openPrinter(vendorId, productId, deviceId);
+        if (printer == null) {
+            return null;
         }
-        byte[] data = new byte[bytes.size()];
-        for (int i = 0; i < bytes.size(); i++) {
-            data[i] = bytes.get(i).byteValue();
+        BitmapPixelSource source = null;
+        try {
+            source = BitmapPixelSource.decode(image, width);
+            BandedRasterEncoder encoder = new BandedRasterEncoder(source,
+                    bandRows > 0 ? bandRows : BandedRasterEncoder.DEFAULT_BAND_ROWS);
+            long[] firstByte = {0};
+            long written;
+            synchronized (printer) {
+                written = encoder.encode(rasterExecutor, RASTER_MAX_IN_FLIGHT, band -> {
+                    if (firstByte[0] == 0) {
+                        firstByte[0] = System.nanoTime();
+                    }
+                    return printer.write(band, 0) == band.length ? band.length : -1;
+                });
+            }
+            if (written < 0) {
+                if (printer.warm) {
+                    dropWarmConnection(printer);
+                }
+                throw new IOException("bulkTransfer failed");
+            }
+            HashMap<String, Object> result = new HashMap<>();
+            result.put("bytesWritten", written);
+            result.put("bands", encoder.bandCount());
+            result.put("timeToFirstByteMicros", (firstByte[0] - start) / 1000);
+            result.put("totalMicros", (System.nanoTime() - start) / 1000);
+            return result;
+        } finally {
+            // encode() has returned, so no band task is still reading the source
+            if (source != null) {
+                source.recycle();
+            }
+            releasePrinter(printer);
+        }
+    }
+
+    public interface CalibrationCallback {
+        void onComplete(Map<String, Object> profile, String error);
+    }
+
+    //    Push the standard test pattern through the printer at full speed and save its throughput profile
+    public void calibrate(String vendorId, String productId, String deviceId, CalibrationCallback callback) {
+        laneFor(vendorId, productId, deviceId).execute(() -> {
+            PrinterConnection printer = openPrinter(vendorId, productId, deviceId);
+            if (printer == null) {
+                mainHandler.post(() -> callback.onComplete(null, "Device not found or permission not granted"));
+                return;
+            }
+            try {
+                ThroughputProfile profile;
+                synchronized (printer) {
+                    profile = ThroughputCalibrator.calibrate(Integer.parseInt(vendorId), Integer.parseInt(productId), printer::transfer);
+                }
+                profileStore.save(profile);
+                UsbDevice device = findDevice((UsbManager) context.getSystemService(USB_SERVICE), vendorId, productId, deviceId);
+                if (device != null) {
+                    printer.pacer = pacerFor(device);
+                }
+                AppLogger.d(TAG, "Calibrated " + profile);
+                Map<String, Object> result = profileToMap(profile);
+                mainHandler.post(() -> callback.onComplete(result, null));
+            } catch (IOException | NumberFormatException e) {
+                AppLogger.e(TAG, "Calibration failed", e);
+                mainHandler.post(() -> callback.onComplete(null, e.getMessage()));
+            } finally {
+                releasePrinter(printer);
+            }
+        });
+    }
+
+    public Map<String, Object> getThroughputProfile(String vendorId, String productId) {
+        ThroughputProfile profile = profileStore.get(Integer.parseInt(vendorId), Integer.parseInt(productId));
+        return profile == null ? null : profileToMap(profile);
+    }
+
+    public void clearThroughputProfile(String vendorId, String productId) {
+        int vid = Integer.parseInt(vendorId);
+        int pid = Integer.parseInt(productId);
+        profileStore.remove(vid, pid);
+        for (PrinterConnection warm : warmConnections.values()) {
+            PacedWriter pacer = warm.pacer;
+            if (pacer != null && pacer.profile().vendorId == vid && pacer.profile().productId == pid) {
+                warm.pacer = null;
+            }
+        }
+        Iterator<PacedWriter> it = pacers.values().iterator();
+        while (it.hasNext()) {
+            ThroughputProfile profile = it.next().profile();
+            if (profile.vendorId == vid && profile.productId == pid) {
+                it.remove();
+            }
+        }
+    }
+
+    private static Map<String, Object> profileToMap(ThroughputProfile profile) {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("vendorId", String.valueOf(profile.vendorId));
+        map.put("productId", String.valueOf(profile.productId));
+        map.put("bytesPerSecond", profile.bytesPerSecond);
+        map.put("burstBytes", profile.burstBytes);
+        map.put("chunkSize", profile.chunkSize);
+        map.put("stallMillis", profile.stallMillis);
+        map.put("chunkTimeoutMillis", profile.chunkTimeoutMillis());
+        return map;
+    }
+
+    //    Closes cold connections; warm ones stay open for the next job
+    private void releasePrinter(PrinterConnection printer) {
+        if (!printer.warm) {
+            printer.close();
+        }
+    }
+
+    private void dropWarmConnection(PrinterConnection printer) {
+        for (Map.Entry<String, PrinterConnection> entry : warmConnections.entrySet()) {
+            if (entry.getValue() == printer) {
+                AppLogger.w(TAG, "Warm connection to " + entry.getKey() + " failed, reopening on next job");
+                closeWarmConnection(entry.getKey());
+                return;
+            }
         }
-        connection.bulkTransfer(mBulkEndOut, data, data.length, 5000);
-        connection.releaseInterface(device.getInterface(0));
-        connection.close();
     }
 
     public boolean isConnected(String vendorId, String productId, String deviceId) {
@@ -269,6 +1172,8 @@ public class UsbDevicesManager {
         if (device == null || !((UsbManager) context.getSystemService(USB_SERVICE)).hasPermission(device))
             return false;
 
+        closeWarmConnection(deviceKey(device));
+
         UsbDeviceConnection connection = ((UsbManager) context.getSystemService(USB_SERVICE)).openDevice(device);
         connection.releaseInterface(device.getInterface(0));
         connection.close();
@@ -322,6 +1227,14 @@ public class UsbDevicesManager {
             AppLogger.e(TAG, "No permission for device. Please request it via broadcast.");
             return;
         }
+        // Several engines share this manager: keep one reader per device instead of claiming the interface twice
+        if (reading && listeningDevice != null && listeningDevice.getDeviceId() == currentDevice.getDeviceId()) {
+            AppLogger.d(TAG, "Already listening to this device.");
+            return;
+        }
+        if (reading) {
+            stopListening();
+        }
         listeningDevice = currentDevice;
         UsbInterface intf = currentDevice.getInterface(0);
         String deviceType = getDeviceType(intf);
@@ -357,16 +1270,24 @@ public class UsbDevicesManager {
 
         AppLogger.d(TAG, "Claimed interface and endpoints. Starting read loop...");
         sendData("AT+VCID=1\\r");
-        readThread = new Thread(this::readLoop);
-        readThread.start();
         reading = true;
+        UsbDeviceConnection readConnection = connection;
+        UsbEndpoint readEndpoint = rEndpoint;
+        readThread = new Thread(() -> readLoop(readConnection, readEndpoint));
+        readThread.start();
     }
 
-    private void readLoop() {
+    //    Reads from the connection it was started with. A reader still blocked in bulkTransfer when the
+    //    device is switched sees it is no longer readThread once the call returns and exits, instead of
+    //    reading the new connection alongside its replacement.
+    private void readLoop(UsbDeviceConnection readConnection, UsbEndpoint readEndpoint) {
         byte[] buffer = new byte[64];
 
-        while (reading) {
-            int len = connection.bulkTransfer(rEndpoint, buffer, buffer.length, TIMEOUT);
+        while (readThread == Thread.currentThread()) {
+            int len = readConnection.bulkTransfer(readEndpoint, buffer, buffer.length, TIMEOUT);
+            if (readThread != Thread.currentThread()) {
+                break;
+            }
             if (len > 0) {
                 analyzePackage(buffer);
             } else if (len == -1) {
@@ -381,6 +1302,8 @@ public class UsbDevicesManager {
     private String sCallee = "";
     private String sOther = "";
     private char sPort = 0;
+    private final CallerIdDeduper callerIdDeduper = new CallerIdDeduper();
+    private final CallHistory callHistory = new CallHistory();
 
     private void analyzePackage(byte[] bytes) {
         try {
@@ -396,13 +1319,14 @@ public class UsbDevicesManager {
                 if (testCliPackage(bytes)) {
                     //TODO pass data to flutter
                     AppLogger.d("analyzePackage", sDateTime + "<-- " + sCaller + "-----" + sCallee + "-----" + sPort + "-----" + sOther);
-                    Map<String, Object> callInfo = new HashMap<>();
-                    callInfo.put("caller", sCaller);
-                    callInfo.put("callee", sCallee);
-                    callInfo.put("datetime", sDateTime);
-                    callInfo.put("port", String.valueOf(sPort));
-                    if (callerIdEventSink != null)
-                        mainHandler.post(() -> callerIdEventSink.success(callInfo));
+                    CallerIdRecord record = new CallerIdRecord(sPort, sCaller, sCallee, sDateTime, System.currentTimeMillis());
+                    if (!callerIdDeduper.accept(record, SystemClock.elapsedRealtime())) {
+                        AppLogger.d("analyzePackage", "Dropped resent frame " + record);
+                        return;
+                    }
+                    callHistory.add(record);
+                    byte[] callInfo = EventCodec.encodeCallerId(sPort, sCaller, sCallee, sDateTime);
+                    emit(callerIdEventSinks, callInfo);
 
 
                 }
@@ -412,6 +1336,22 @@ public class UsbDevicesManager {
         }
     }
 
+    //    Recent calls, newest first; only calls from the given number when it is not null
+    public List<Map<String, Object>> getRecentCalls(String number, int limit) {
+        List<CallerIdRecord> records = number == null ? callHistory.recent(limit) : callHistory.forNumber(number, limit);
+        List<Map<String, Object>> calls = new ArrayList<>(records.size());
+        for (CallerIdRecord record : records) {
+            Map<String, Object> callInfo = new HashMap<>();
+            callInfo.put("caller", record.caller);
+            callInfo.put("callee", record.callee);
+            callInfo.put("datetime", record.datetime);
+            callInfo.put("port", String.valueOf(record.port));
+            callInfo.put("receivedAt", record.receivedAtMillis);
+            calls.add(callInfo);
+        }
+        return calls;
+    }
+
     private boolean testCliPackage(byte[] Package) {
         boolean res = false;
         try {
@@ -602,14 +1542,8 @@ public class UsbDevicesManager {
 
     public void stopListening() {
         reading = false;
-        if (readThread != null && readThread.isAlive()) {
-            try {
-                readThread.join(500);
-            } catch (InterruptedException e) {
-                AppLogger.e(TAG, "Interrupted while stopping read thread", e);
-            }
-            readThread = null;
-        }
+        Thread reader = readThread;
+        readThread = null;
         try {
             if (connection != null) {
                 if (mIntf != null) {
@@ -624,6 +1558,16 @@ public class UsbDevicesManager {
         rEndpoint = null;
         wEndpoint = null;
         listeningDevice = null;
+        // Closing the connection fails any transfer the reader is blocked in. A reader that outlives
+        // the join still exits on its own once its transfer returns, since it is no longer readThread.
+        if (reader != null && reader != Thread.currentThread()) {
+            try {
+                reader.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                AppLogger.e(TAG, "Interrupted while stopping read thread", e);
+            }
+        }
         AppLogger.d(TAG, "Stopped listening to Caller ID.");
     }
 
@@ -0,0 +1,89 @@
+package com.example.flutter_thermal_printer.callerid;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded in-memory history of recent calls: a ring buffer of the last {@code capacity} records
+ * plus an index by caller number, so both "recent callers" and "recent calls from X" are answered
+ * without scanning.
+ */
+public class CallHistory {
+    public static final int DEFAULT_CAPACITY = 200;
+
+    private final CallerIdRecord[] ring;
+    private final Map<String, ArrayDeque<CallerIdRecord>> byNumber = new HashMap<>();
+    private int next;
+    private int size;
+
+    public CallHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CallHistory(int capacity) {
+        ring = new CallerIdRecord[capacity];
+    }
+
+    public synchronized void add(CallerIdRecord record) {
+        CallerIdRecord evicted = ring[next];
+        if (evicted != null) {
+            // The evicted record is the oldest overall, hence the oldest for its number too
+            ArrayDeque<CallerIdRecord> calls = byNumber.get(evicted.caller);
+            calls.pollFirst();
+            if (calls.isEmpty()) {
+                byNumber.remove(evicted.caller);
+            }
+        }
+        ring[next] = record;
+        next = (next + 1) % ring.length;
+        size = Math.min(size + 1, ring.length);
+
+        ArrayDeque<CallerIdRecord> calls = byNumber.get(record.caller);
+        if (calls == null) {
+            calls = new ArrayDeque<>();
+            byNumber.put(record.caller, calls);
+        }
+        calls.addLast(record);
+    }
+
+    /**
+     * @return up to {@code limit} most recent calls, newest first.
+     */
+    public synchronized List<CallerIdRecord> recent(int limit) {
+        int count = Math.max(0, Math.min(limit, size));
+        List<CallerIdRecord> result = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            result.add(ring[(next - i + ring.length) % ring.length]);
+        }
+        return result;
+    }
+
+    /**
+     * @return up to {@code limit} most recent calls from {@code number}, newest first.
+     */
+    public synchronized List<CallerIdRecord> forNumber(String number, int limit) {
+        ArrayDeque<CallerIdRecord> calls = byNumber.get(number);
+        List<CallerIdRecord> result = new ArrayList<>();
+        if (calls == null) {
+            return result;
+        }
+        Iterator<CallerIdRecord> it = calls.descendingIterator();
+        while (it.hasNext() && result.size() < limit) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = null;
+        }
+        byNumber.clear();
+        next = 0;
+        size = 0;
+    }
+}
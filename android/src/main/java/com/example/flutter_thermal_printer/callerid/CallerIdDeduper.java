@@ -0,0 +1,46 @@
+package com.example.flutter_thermal_printer.callerid;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drops caller-ID frames the unit resends for the same call.
+ * <p>
+ * A frame is a duplicate if a frame with the same (port, caller, datetime) was accepted less than
+ * {@code windowMillis} ago. The window is measured from the first frame, so a genuine second call
+ * from the same number in the same minute is still reported once the window has passed.
+ */
+public class CallerIdDeduper {
+    public static final long DEFAULT_WINDOW_MILLIS = 10_000;
+
+    private final long windowMillis;
+    // Insertion-ordered, so the oldest entries are always at the head
+    private final LinkedHashMap<String, Long> seen = new LinkedHashMap<>();
+
+    public CallerIdDeduper() {
+        this(DEFAULT_WINDOW_MILLIS);
+    }
+
+    public CallerIdDeduper(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * @param now a monotonic clock ({@code SystemClock.elapsedRealtime()} on device), so the
+     *                  window is unaffected by wall-clock changes. {@code receivedAtMillis} is not used.
+     * @return true if the record is new and should be delivered, false if it is a resend.
+     */
+    public synchronized boolean accept(CallerIdRecord record, long now) {
+        Iterator<Map.Entry<String, Long>> it = seen.entrySet().iterator();
+        while (it.hasNext() && now - it.next().getValue() >= windowMillis) {
+            it.remove();
+        }
+        String key = record.port + "|" + record.caller + "|" + record.datetime;
+        if (seen.containsKey(key)) {
+            return false;
+        }
+        seen.put(key, now);
+        return true;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.flutter_thermal_printer.callerid;
+
+/**
+ * One decoded caller-ID frame (SDMF or MDMF).
+ */
+public class CallerIdRecord {
+    public final char port;
+    public final String caller;
+    public final String callee;
+    public final String datetime;
+    public final long receivedAtMillis;
+
+    public CallerIdRecord(char port, String caller, String callee, String datetime, long receivedAtMillis) {
+        this.port = port;
+        this.caller = caller;
+        this.callee = callee;
+        this.datetime = datetime;
+        this.receivedAtMillis = receivedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return datetime + " <-- " + caller + " (" + callee + ") port " + port;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.flutter_thermal_printer.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary format for device descriptors and caller-ID records sent to Dart.
+ * <p>
+ * Every message is a {@code byte[]} (a {@code Uint8List} on the Dart side, decoded by
+ * {@code lib/utils/event_codec.dart}) laid out big-endian as:
+ * <pre>
+ * header  : version u8 | type u8 | count u16
+ * device  : vendorId u16 | productId u16 | deviceId i32 | flags u8 | nameLen u16 | name utf8
+ * callerId: port u8 | datetimeLen u8 | datetime | callerLen u8 | caller | calleeLen u8 | callee
+ * </pre>
+ * Field order is fixed, so no key names travel over the channel. Bump {@link #VERSION} whenever the
+ * layout changes and keep the Dart decoder in step.
+ */
+public final class EventCodec {
+    public static final int VERSION = 1;
+
+    public static final int TYPE_DEVICE_LIST = 1;
+    public static final int TYPE_DEVICE_EVENT = 2;
+    public static final int TYPE_CALLER_ID = 3;
+
+    public static final int FLAG_CONNECTED = 1;
+    public static final int FLAG_REMOVED = 1 << 1;
+    public static final int FLAG_HAS_NAME = 1 << 2;
+
+    private static final int HEADER_BYTES = 4;
+    private static final int MAX_SHORT_STRING = 0xFF;
+    private static final int MAX_STRING = 0xFFFF;
+
+    private EventCodec() {
+    }
+
+    /**
+     * Appends device records to a single message. Not thread-safe; use one writer per message.
+     */
+    public static final class DeviceWriter {
+        private byte[] buffer;
+        private int position = HEADER_BYTES;
+        private int count;
+
+        public DeviceWriter(int type) {
+            this(type, 4);
+        }
+
+        public DeviceWriter(int type, int expectedDevices) {
+            buffer = new byte[HEADER_BYTES + expectedDevices * 32];
+            buffer[0] = (byte) VERSION;
+            buffer[1] = (byte) type;
+        }
+
+        public DeviceWriter device(int vendorId, int productId, int deviceId, String name, boolean connected, boolean removed) {
+            byte[] nameBytes = name == null ? null : utf8(name, MAX_STRING);
+            int flags = (connected ? FLAG_CONNECTED : 0) | (removed ? FLAG_REMOVED : 0) | (nameBytes != null ? FLAG_HAS_NAME : 0);
+            int nameLength = nameBytes == null ? 0 : nameBytes.length;
+            ensure(11 + nameLength);
+            putShort(vendorId);
+            putShort(productId);
+            putInt(deviceId);
+            buffer[position++] = (byte) flags;
+            putShort(nameLength);
+            if (nameBytes != null) {
+                System.arraycopy(nameBytes, 0, buffer, position, nameLength);
+                position += nameLength;
+            }
+            count++;
+            return this;
+        }
+
+        public byte[] finish() {
+            buffer[2] = (byte) (count >>> 8);
+            buffer[3] = (byte) count;
+            return position == buffer.length ? buffer : Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+
+        private void putShort(int value) {
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        private void putInt(int value) {
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+    }
+
+    public static byte[] encodeDevice(int vendorId, int productId, int deviceId, String name, boolean connected, boolean removed) {
+        return new DeviceWriter(TYPE_DEVICE_EVENT, 1).device(vendorId, productId, deviceId, name, connected, removed).finish();
+    }
+
+    public static byte[] encodeCallerId(char port, String caller, String callee, String datetime) {
+        byte[] datetimeBytes = utf8(datetime, MAX_SHORT_STRING);
+        byte[] callerBytes = utf8(caller, MAX_SHORT_STRING);
+        byte[] calleeBytes = utf8(callee, MAX_SHORT_STRING);
+        byte[] out = new byte[HEADER_BYTES + 4 + datetimeBytes.length + callerBytes.length + calleeBytes.length];
+        out[0] = (byte) VERSION;
+        out[1] = (byte) TYPE_CALLER_ID;
+        out[3] = 1;
+        int position = HEADER_BYTES;
+        out[position++] = (byte) port;
+        position = putShortString(out, position, datetimeBytes);
+        position = putShortString(out, position, callerBytes);
+        putShortString(out, position, calleeBytes);
+        return out;
+    }
+
+    private static int putShortString(byte[] out, int position, byte[] value) {
+        out[position++] = (byte) value.length;
+        System.arraycopy(value, 0, out, position, value.length);
+        return position + value.length;
+    }
+
+    // Truncates to maxLength bytes without splitting a multi-byte character
+    private static byte[] utf8(String value, int maxLength) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxLength) {
+            return bytes;
+        }
+        int end = maxLength;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return Arrays.copyOf(bytes, end);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.flutter_thermal_printer.pacing;
+
+/**
+ * Writes data to a printer in chunks, pacing submission to just under the model's measured
+ * sustained rate so slow printers are never handed more than their buffer can hold.
+ * <p>
+ * The writer keeps a leaky-bucket estimate of how much is still queued in the printer across
+ * calls: the first {@link ThroughputProfile#burstBytes} go out at full speed, after that chunks
+ * are released at {@link #HEADROOM} of {@link ThroughputProfile#bytesPerSecond}.
+ */
+public class PacedWriter {
+    public static final double HEADROOM = 0.9;
+    /**
+     * Largest single transfer for uncalibrated printers; {@code bulkTransfer} silently caps transfers
+     * at 16 KB before API 28.
+     */
+    public static final int MAX_TRANSFER = 16 * 1024;
+
+    public interface Sink {
+        /**
+         * @return bytes written, or a negative value on failure (same contract as {@code bulkTransfer}).
+         */
+        int write(byte[] data, int offset, int length, int timeoutMs);
+    }
+
+    public interface Clock {
+        long nanoTime();
+
+        void sleepNanos(long nanos) throws InterruptedException;
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleepNanos(long nanos) throws InterruptedException {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        }
+    };
+
+    private final ThroughputProfile profile;
+    private final Clock clock;
+    private final double bytesPerNano;
+    private long drainedAtNanos;
+
+    public PacedWriter(ThroughputProfile profile) {
+        this(profile, SYSTEM_CLOCK);
+    }
+
+    public PacedWriter(ThroughputProfile profile, Clock clock) {
+        this.profile = profile;
+        this.clock = clock;
+        this.bytesPerNano = profile.bytesPerSecond * HEADROOM / 1e9;
+        this.drainedAtNanos = clock.nanoTime();
+    }
+
+    public ThroughputProfile profile() {
+        return profile;
+    }
+
+    /**
+     * @param sink      the printer connection; the queue estimate carries over between connections to the same printer.
+     * @param timeoutMs per-chunk timeout, or 0 to use the profile's.
+     * @return bytes written, which is less than {@code data.length} if a chunk failed part-way
+     * through, or -1 if nothing was written.
+     */
+    public synchronized int write(Sink sink, byte[] data, int timeoutMs) {
+        int timeout = timeoutMs > 0 ? timeoutMs : profile.chunkTimeoutMillis();
+        int offset = 0;
+        while (offset < data.length) {
+            int length = Math.min(profile.chunkSize, data.length - offset);
+            long now = clock.nanoTime();
+            double queued = Math.max(0, drainedAtNanos - now) * bytesPerNano;
+            double excess = queued + length - profile.burstBytes;
+            if (excess > 0) {
+                try {
+                    clock.sleepNanos((long) Math.ceil(excess / bytesPerNano));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return progress(offset);
+                }
+                now = clock.nanoTime();
+            }
+            int written = sink.write(data, offset, length, timeout);
+            if (written <= 0) {
+                return progress(offset);
+            }
+            drainedAtNanos = Math.max(drainedAtNanos, now) + (long) (written / bytesPerNano);
+            offset += written;
+        }
+        return offset;
+    }
+
+    /**
+     * Writes without pacing, for printers that were never calibrated, in transfers of at most
+     * {@link #MAX_TRANSFER} bytes.
+     *
+     * @return bytes written, which is less than {@code data.length} if a transfer failed part-way
+     * through, or -1 if nothing was written.
+     */
+    public static int writeUnpaced(Sink sink, byte[] data, int timeoutMs) {
+        int offset = 0;
+        while (offset < data.length) {
+            int written = sink.write(data, offset, Math.min(MAX_TRANSFER, data.length - offset), timeoutMs);
+            if (written <= 0) {
+                return progress(offset);
+            }
+            offset += written;
+        }
+        return offset;
+    }
+
+    // Bytes already sent have been printed, so a failure after some progress reports them rather than
+    // -1; callers may only resend the payload from the start when nothing went out.
+    private static int progress(int offset) {
+        return offset > 0 ? offset : -1;
+    }
+}
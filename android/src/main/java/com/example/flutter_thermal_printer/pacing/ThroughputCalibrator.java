@@ -0,0 +1,106 @@
+package com.example.flutter_thermal_printer.pacing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures a printer's sustained throughput by pushing a dense raster test pattern through it
+ * at full speed and timing every chunk.
+ * <p>
+ * The first chunks land in the printer's receive buffer and return quickly; once the buffer is
+ * full each chunk takes as long as the printer needs to burn it. The sustained rate is taken from
+ * the second half of the run, the burst size is whatever was accepted beyond that rate, and the
+ * longest steady-state chunk is recorded as the stall time.
+ */
+public class ThroughputCalibrator {
+    public static final int DEFAULT_PATTERN_BYTES = 48 * 1024;
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+    /** 384 dots, printable on both 58mm and 80mm heads. */
+    public static final int PATTERN_WIDTH_BYTES = 48;
+    private static final int CALIBRATION_TIMEOUT_MS = 10000;
+    private static final int BAND_ROWS = 128;
+
+    /**
+     * Builds an ESC/POS job of about {@code approxBytes}: raster bands alternating solid and
+     * checkerboard rows, the worst case for burn speed.
+     */
+    public static byte[] testPattern(int approxBytes) {
+        int rows = Math.max(1, approxBytes / PATTERN_WIDTH_BYTES);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(approxBytes + 64);
+        out.write(0x1B);
+        out.write('@');
+        for (int band = 0; band < rows; band += BAND_ROWS) {
+            int bandRows = Math.min(BAND_ROWS, rows - band);
+            // GS v 0: raster bit image, normal density
+            out.write(0x1D);
+            out.write('v');
+            out.write('0');
+            out.write(0);
+            out.write(PATTERN_WIDTH_BYTES & 0xFF);
+            out.write(PATTERN_WIDTH_BYTES >> 8);
+            out.write(bandRows & 0xFF);
+            out.write(bandRows >> 8);
+            for (int row = 0; row < bandRows; row++) {
+                int pattern = (band + row) % 2 == 0 ? 0xFF : ((band + row) % 4 == 1 ? 0xAA : 0x55);
+                for (int i = 0; i < PATTERN_WIDTH_BYTES; i++) {
+                    out.write(pattern);
+                }
+            }
+        }
+        out.write('\n');
+        out.write('\n');
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    public static ThroughputProfile calibrate(int vendorId, int productId, PacedWriter.Sink sink) throws IOException {
+        return calibrate(vendorId, productId, sink, testPattern(DEFAULT_PATTERN_BYTES), DEFAULT_CHUNK_SIZE, PacedWriter.SYSTEM_CLOCK);
+    }
+
+    public static ThroughputProfile calibrate(int vendorId, int productId, PacedWriter.Sink sink, byte[] pattern, int chunkSize, PacedWriter.Clock clock) throws IOException {
+        int chunks = (pattern.length + chunkSize - 1) / chunkSize;
+        long[] latencies = new long[chunks];
+        int[] sizes = new int[chunks];
+
+        long start = clock.nanoTime();
+        int offset = 0;
+        for (int i = 0; i < chunks; i++) {
+            int length = Math.min(chunkSize, pattern.length - offset);
+            long chunkStart = clock.nanoTime();
+            int written = 0;
+            while (written < length) {
+                int n = sink.write(pattern, offset + written, length - written, CALIBRATION_TIMEOUT_MS);
+                if (n <= 0) {
+                    throw new IOException("Transfer failed after " + (offset + written) + " bytes of the calibration pattern");
+                }
+                written += n;
+            }
+            latencies[i] = clock.nanoTime() - chunkStart;
+            sizes[i] = length;
+            offset += length;
+        }
+        long totalNanos = Math.max(1, clock.nanoTime() - start);
+
+        int steadyFrom = chunks / 2;
+        long steadyBytes = 0;
+        long steadyNanos = 0;
+        long maxSteadyLatency = 0;
+        for (int i = steadyFrom; i < chunks; i++) {
+            steadyBytes += sizes[i];
+            steadyNanos += latencies[i];
+            maxSteadyLatency = Math.max(maxSteadyLatency, latencies[i]);
+        }
+        long bytesPerSecond = steadyNanos == 0 ? Long.MAX_VALUE / 2 : (long) (steadyBytes * 1e9 / steadyNanos);
+        long burstBytes = (long) (pattern.length - bytesPerSecond * (totalNanos / 1e9));
+        long stallMillis = Math.max(0, (maxSteadyLatency - median(latencies, steadyFrom)) / 1_000_000);
+
+        return new ThroughputProfile(vendorId, productId, bytesPerSecond, (int) Math.max(0, Math.min(Integer.MAX_VALUE, burstBytes)), chunkSize, stallMillis);
+    }
+
+    private static long median(long[] values, int from) {
+        long[] sorted = Arrays.copyOfRange(values, from, values.length);
+        Arrays.sort(sorted);
+        return sorted.length == 0 ? 0 : sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.flutter_thermal_printer.pacing;
+
+import java.util.Locale;
+
+/**
+ * Measured write capacity of one printer model (vendorId/productId), produced by
+ * {@link ThroughputCalibrator} and consumed by {@link PacedWriter}.
+ */
+public class ThroughputProfile {
+    private static final String FORMAT_VERSION = "1";
+    private static final int MIN_TIMEOUT_MS = 500;
+
+    public final int vendorId;
+    public final int productId;
+    /** Sustained rate the printer accepts data once its buffer is full. */
+    public final long bytesPerSecond;
+    /** Bytes the printer absorbs ahead of its sustained rate (its receive buffer). */
+    public final int burstBytes;
+    public final int chunkSize;
+    /** Longest single-chunk stall seen during calibration. */
+    public final long stallMillis;
+
+    public ThroughputProfile(int vendorId, int productId, long bytesPerSecond, int burstBytes, int chunkSize, long stallMillis) {
+        this.vendorId = vendorId;
+        this.productId = productId;
+        this.bytesPerSecond = Math.max(1, bytesPerSecond);
+        this.burstBytes = Math.max(chunkSize, burstBytes);
+        this.chunkSize = chunkSize;
+        this.stallMillis = stallMillis;
+    }
+
+    /**
+     * Timeout for one chunk: twice the time it should take at the sustained rate, plus the worst stall.
+     */
+    public int chunkTimeoutMillis() {
+        long transferMillis = (chunkSize * 1000L + bytesPerSecond - 1) / bytesPerSecond;
+        return (int) Math.max(MIN_TIMEOUT_MS, Math.min(Integer.MAX_VALUE, transferMillis * 2 + stallMillis));
+    }
+
+    public String encode() {
+        return String.format(Locale.US, "%s;%d;%d;%d;%d", FORMAT_VERSION, bytesPerSecond, burstBytes, chunkSize, stallMillis);
+    }
+
+    /**
+     * @return the decoded profile, or null if {@code value} is missing or from another format version.
+     */
+    public static ThroughputProfile decode(int vendorId, int productId, String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(";");
+        if (parts.length != 5 || !FORMAT_VERSION.equals(parts[0])) {
+            return null;
+        }
+        try {
+            return new ThroughputProfile(vendorId, productId, Long.parseLong(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), Long.parseLong(parts[4]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ThroughputProfile(" + vendorId + ":" + productId + ", " + bytesPerSecond + " B/s, burst " + burstBytes + ", chunk " + chunkSize + ", stall " + stallMillis + "ms)";
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.flutter_thermal_printer.pacing;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists {@link ThroughputProfile}s per printer model in SharedPreferences, with an in-memory
+ * cache so the print path does not hit storage.
+ */
+public class ThroughputProfileStore {
+    private static final String PREFS_NAME = "flutter_thermal_printer_throughput";
+    private static final ThroughputProfile NONE = new ThroughputProfile(0, 0, 1, 0, 0, 0);
+
+    private final SharedPreferences prefs;
+    private final Map<String, ThroughputProfile> cache = new ConcurrentHashMap<>();
+
+    public ThroughputProfileStore(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the saved profile for the model, or null if it was never calibrated.
+     */
+    public ThroughputProfile get(int vendorId, int productId) {
+        String key = key(vendorId, productId);
+        ThroughputProfile profile = cache.get(key);
+        if (profile == null) {
+            profile = ThroughputProfile.decode(vendorId, productId, prefs.getString(key, null));
+            cache.put(key, profile == null ? NONE : profile);
+        }
+        return profile == NONE ? null : profile;
+    }
+
+    public void save(ThroughputProfile profile) {
+        String key = key(profile.vendorId, profile.productId);
+        prefs.edit().putString(key, profile.encode()).apply();
+        cache.put(key, profile);
+    }
+
+    public void remove(int vendorId, int productId) {
+        String key = key(vendorId, productId);
+        prefs.edit().remove(key).apply();
+        cache.put(key, NONE);
+    }
+
+    private static String key(int vendorId, int productId) {
+        return vendorId + ":" + productId;
+    }
+}
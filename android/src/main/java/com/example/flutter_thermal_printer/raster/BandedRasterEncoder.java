@@ -0,0 +1,204 @@
+package com.example.flutter_thermal_printer.raster;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Converts an image to ESC/POS 1-bit raster ({@code GS v 0}) in horizontal bands.
+ * <p>
+ * Dithering uses an 8x8 ordered (Bayer) matrix indexed by absolute pixel position, so every band
+ * can be encoded independently and the bands still join seamlessly. {@link #encode} uses that to
+ * encode bands in parallel on a bounded pool while finished bands are handed to the printer in
+ * order, keeping at most {@code maxInFlight} bands buffered.
+ */
+public class BandedRasterEncoder {
+    public static final int DEFAULT_BAND_ROWS = 64;
+
+    public interface BandSink {
+        /**
+         * @return bytes written, or a negative value to abort the job.
+         */
+        int write(byte[] band);
+    }
+
+    private static final int[] BAYER_8X8 = {
+            0, 32, 8, 40, 2, 34, 10, 42,
+            48, 16, 56, 24, 50, 18, 58, 26,
+            12, 44, 4, 36, 14, 46, 6, 38,
+            60, 28, 52, 20, 62, 30, 54, 22,
+            3, 35, 11, 43, 1, 33, 9, 41,
+            51, 19, 59, 27, 49, 17, 57, 25,
+            15, 47, 7, 39, 13, 45, 5, 37,
+            63, 31, 55, 23, 61, 29, 53, 21,
+    };
+
+    private final PixelSource source;
+    private final int bandRows;
+    private final int widthBytes;
+
+    public BandedRasterEncoder(PixelSource source, int bandRows) {
+        this.source = source;
+        this.bandRows = bandRows;
+        this.widthBytes = (source.width() + 7) / 8;
+    }
+
+    public int bandCount() {
+        return (source.height() + bandRows - 1) / bandRows;
+    }
+
+    /**
+     * Dithers and packs one band, including its {@code GS v 0} header. Safe to call concurrently.
+     */
+    public byte[] encodeBand(int band) {
+        int width = source.width();
+        int y0 = band * bandRows;
+        int rows = Math.min(bandRows, source.height() - y0);
+        int[] pixels = new int[width * rows];
+        source.getRows(pixels, y0, rows);
+
+        byte[] out = new byte[8 + widthBytes * rows];
+        out[0] = 0x1D;
+        out[1] = 'v';
+        out[2] = '0';
+        out[3] = 0;
+        out[4] = (byte) widthBytes;
+        out[5] = (byte) (widthBytes >> 8);
+        out[6] = (byte) rows;
+        out[7] = (byte) (rows >> 8);
+        int position = 8;
+        for (int row = 0; row < rows; row++) {
+            int rowOffset = row * width;
+            int matrixRow = ((y0 + row) & 7) << 3;
+            for (int xByte = 0; xByte < widthBytes; xByte++) {
+                int packed = 0;
+                int x0 = xByte << 3;
+                for (int bit = 0; bit < 8; bit++) {
+                    int x = x0 + bit;
+                    // Padding past the right edge stays white
+                    if (x < width && luminance(pixels[rowOffset + x]) < (BAYER_8X8[matrixRow + (x & 7)] << 2) + 2) {
+                        packed |= 0x80 >> bit;
+                    }
+                }
+                out[position++] = (byte) packed;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Encodes and writes every band on the calling thread, one after the other.
+     *
+     * @return total bytes written, or -1 if the sink failed.
+     */
+    public long encodeSequential(BandSink sink) {
+        long total = 0;
+        for (int band = 0; band < bandCount(); band++) {
+            int written = sink.write(encodeBand(band));
+            if (written < 0) {
+                return -1;
+            }
+            total += written;
+        }
+        return total;
+    }
+
+    /**
+     * Encodes bands on {@code executor} while writing finished bands to {@code sink} in order from
+     * the calling thread. At most {@code maxInFlight} bands are queued or buffered at once.
+     * <p>
+     * However it ends, this only returns once no band task is reading the source any more, so the
+     * caller may release the source right after.
+     *
+     * @return total bytes written, or -1 if the sink failed.
+     */
+    public long encode(ExecutorService executor, int maxInFlight, BandSink sink) throws IOException {
+        int bands = bandCount();
+        ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        final BandTasks tasks = new BandTasks();
+        int submitted = 0;
+        long total = 0;
+        try {
+            for (int band = 0; band < bands; band++) {
+                while (submitted < bands && inFlight.size() < maxInFlight) {
+                    final int next = submitted++;
+                    inFlight.add(executor.submit(() -> {
+                        if (!tasks.enter()) {
+                            return null;
+                        }
+                        try {
+                            return encodeBand(next);
+                        } finally {
+                            tasks.exit();
+                        }
+                    }));
+                }
+                int written = sink.write(inFlight.poll().get());
+                if (written < 0) {
+                    return -1;
+                }
+                total += written;
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding image", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to encode image band", e.getCause());
+        } finally {
+            for (Future<byte[]> future : inFlight) {
+                future.cancel(false);
+            }
+            tasks.closeAndAwait();
+        }
+    }
+
+    /**
+     * Counts band tasks currently reading the source. Once closed, tasks that have not started yet
+     * skip their band, and {@link #closeAndAwait} waits for the ones already running.
+     */
+    private static final class BandTasks {
+        private int active;
+        private boolean closed;
+
+        synchronized boolean enter() {
+            if (closed) {
+                return false;
+            }
+            active++;
+            return true;
+        }
+
+        synchronized void exit() {
+            active--;
+            notifyAll();
+        }
+
+        synchronized void closeAndAwait() {
+            closed = true;
+            boolean interrupted = false;
+            while (active > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static int luminance(int argb) {
+        int a = argb >>> 24;
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        int lum = (r * 299 + g * 587 + b * 114) / 1000;
+        // Composite transparent pixels over white paper
+        return 255 - a * (255 - lum) / 255;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.flutter_thermal_printer.raster;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Build;
+
+import java.io.IOException;
+
+/**
+ * {@link PixelSource} over an encoded image (PNG, JPEG or WebP), decoded one band at a time with a
+ * {@link BitmapRegionDecoder} and scaled to the printer's dot width per band. Only the bands being
+ * encoded are ever held as bitmaps, however long the image is.
+ * <p>
+ * {@code decodeRegion} is serialised internally, so decoding is not parallel: concurrent bands
+ * decode one after the other, and only their scaling and dithering run in parallel.
+ */
+public class BitmapPixelSource implements PixelSource {
+    private final BitmapRegionDecoder decoder;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int width;
+    private final int height;
+    private final int sampleSize;
+
+    private BitmapPixelSource(BitmapRegionDecoder decoder, int width) {
+        this.decoder = decoder;
+        this.sourceWidth = decoder.getWidth();
+        this.sourceHeight = decoder.getHeight();
+        this.width = width > 0 ? width : sourceWidth;
+        this.height = Math.max(1, Math.round((float) sourceHeight * this.width / sourceWidth));
+        // Subsample in the decoder when shrinking by 2x or more, so regions are decoded no larger than needed
+        int sample = 1;
+        while (sourceWidth / (sample * 2) >= this.width) {
+            sample *= 2;
+        }
+        this.sampleSize = sample;
+    }
+
+    /**
+     * Prepares the image for band-by-band decoding, scaling to {@code width} dots (keeping the
+     * aspect ratio) when it is positive. Only the image header is read here.
+     *
+     * @throws IOException if the bytes are not an image format the region decoder supports.
+     */
+    public static BitmapPixelSource decode(byte[] image, int width) throws IOException {
+        return new BitmapPixelSource(newDecoder(image), width);
+    }
+
+    // The isShareable flag has been ignored since API 21 and the overload taking it is deprecated in API 31
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder newDecoder(byte[] image) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(image, 0, image.length);
+        }
+        return BitmapRegionDecoder.newInstance(image, 0, image.length, false);
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public void getRows(int[] out, int y, int rows) {
+        // Source rows covering output rows [y, y + rows)
+        int top = (int) ((long) y * sourceHeight / height);
+        int bottom = (int) Math.min(sourceHeight, ((long) (y + rows) * sourceHeight + height - 1) / height);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap region = decoder.decodeRegion(new Rect(0, top, sourceWidth, Math.max(bottom, top + 1)), options);
+        if (region == null) {
+            throw new IllegalStateException("Could not decode image rows " + top + "-" + bottom);
+        }
+        Bitmap band = region;
+        if (region.getWidth() != width || region.getHeight() != rows) {
+            band = Bitmap.createScaledBitmap(region, width, rows, true);
+        }
+        band.getPixels(out, 0, width, 0, 0, width, rows);
+        if (band != region) {
+            band.recycle();
+        }
+        region.recycle();
+    }
+
+    /**
+     * Releases the decoder. No {@link #getRows} call may be running or follow.
+     */
+    public void recycle() {
+        decoder.recycle();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.flutter_thermal_printer.raster;
+
+/**
+ * Row-addressable ARGB image, read band by band so a long receipt never has to be expanded in
+ * one piece. Implementations must allow concurrent {@link #getRows} calls.
+ */
+public interface PixelSource {
+    int width();
+
+    int height();
+
+    /**
+     * Copies {@code rows} rows starting at {@code y} into {@code out} as ARGB, {@link #width()} ints per row.
+     */
+    void getRows(int[] out, int y, int rows);
+}
@@ -0,0 +1,25 @@
+package com.example.flutter_thermal_printer.spool;
+
+/**
+ * A print job as stored in the {@link PrintSpool}: the target device and the raw ESC/POS payload.
+ */
+public class PrintJob {
+    public final long id;
+    public final String vendorId;
+    public final String productId;
+    public final String deviceId;
+    public final byte[] data;
+
+    public PrintJob(long id, String vendorId, String productId, String deviceId, byte[] data) {
+        this.id = id;
+        this.vendorId = vendorId;
+        this.productId = productId;
+        this.deviceId = deviceId;
+        this.data = data;
+    }
+
+    @Override
+    public String toString() {
+        return "PrintJob#" + id + "(" + vendorId + ":" + productId + ":" + deviceId + ", " + data.length + " bytes)";
+    }
+}
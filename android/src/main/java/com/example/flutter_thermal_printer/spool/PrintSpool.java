@@ -0,0 +1,522 @@
+package com.example.flutter_thermal_printer.spool;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Durable write-ahead spool for print jobs.
+ * <p>
+ * Jobs are appended to a segmented append-only log under {@code dir} before they are sent to the
+ * printer and a completion record is appended once the transfer succeeded. Jobs that were appended
+ * but never completed (e.g. the process was killed mid-rush) are returned by {@link #pending()}
+ * after the next start and can be re-sent with {@link #replay(PrintTransport)}. Only jobs recovered
+ * from disk are replayed; jobs appended since the spool was opened belong to callers still sending them.
+ * <p>
+ * {@link #append} only returns once the record is on disk, but concurrent appenders share a single
+ * {@code fsync} (group commit): whichever caller finds no sync in progress forces everything written
+ * so far, and the others wait for it instead of issuing their own. {@link #appendAll} spools a
+ * caller's whole batch under one {@code fsync} as well. Completion records are not forced,
+ * so a crash right after a print may replay that job once more (at-least-once delivery).
+ * <p>
+ * Once the head segment rolls over, older segments are compacted: jobs still pending in them are
+ * copied forward into the head and the old file is deleted, so a job that can never be delivered
+ * does not pin the log. Pending jobs are kept in memory and capped by count and total size; past
+ * either limit the oldest are dropped (see {@link #droppedCount()}).
+ */
+public class PrintSpool implements Closeable {
+    public static final long DEFAULT_SEGMENT_BYTES = 4L * 1024 * 1024;
+    public static final int DEFAULT_MAX_PENDING_JOBS = 256;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("spool-(\\d+)\\.log");
+    private static final byte TYPE_APPEND = 1;
+    private static final byte TYPE_COMPLETE = 2;
+    private static final byte TYPE_DROP = 3;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private final File dir;
+    private final long segmentBytes;
+    private final int maxPendingJobs;
+    private final long maxPendingBytes;
+    private final List<Long> recoveredIds = new ArrayList<>();
+
+    private final Object writeLock = new Object();
+    // Guarded by writeLock
+    private final LinkedHashMap<Long, Long> pendingSegments = new LinkedHashMap<>();
+    private final LinkedHashMap<Long, PrintJob> pendingJobs = new LinkedHashMap<>();
+    private final TreeSet<Long> segments = new TreeSet<>();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long segmentSeq;
+    private long segmentWritten;
+    private long writtenBytes;
+    private long nextJobId = 1;
+    private long pendingBytes;
+    private long droppedCount;
+    private boolean closed;
+
+    private final Object syncLock = new Object();
+    // Guarded by syncLock
+    private long syncedBytes;
+    private boolean syncing;
+    private long syncCount;
+
+    public PrintSpool(File dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public PrintSpool(File dir, long segmentBytes) throws IOException {
+        this(dir, segmentBytes, DEFAULT_MAX_PENDING_JOBS, segmentBytes / 2);
+    }
+
+    /**
+     * @param maxPendingBytes upper bound on the payload bytes held for pending jobs. Keeping it well
+     *                        below {@code segmentBytes} bounds the cost of copying them forward.
+     */
+    public PrintSpool(File dir, long segmentBytes, int maxPendingJobs, long maxPendingBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxPendingJobs = maxPendingJobs;
+        this.maxPendingBytes = maxPendingBytes;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create spool directory " + dir);
+        }
+        long lastSeq = recover();
+        openSegment(lastSeq + 1);
+        synchronized (writeLock) {
+            // Limits may have shrunk since the last run; the newest job is always kept, as in append
+            long newest = -1;
+            for (long id : pendingJobs.keySet()) {
+                newest = id;
+            }
+            enforceLimitsLocked(newest);
+            recoveredIds.addAll(pendingJobs.keySet());
+            compactLocked();
+        }
+    }
+
+    /**
+     * Appends a job to the log and blocks until it is durable.
+     */
+    public PrintJob append(String vendorId, String productId, String deviceId, byte[] data) throws IOException {
+        return appendAll(vendorId, productId, deviceId, Collections.singletonList(data)).get(0);
+    }
+
+    /**
+     * Appends one job per payload, in order, and blocks until all of them are durable. The whole
+     * batch costs a single {@code fsync}, so callers that already hold several jobs for a device
+     * should spool them here rather than through {@link #append} one by one.
+     */
+    public List<PrintJob> appendAll(String vendorId, String productId, String deviceId, List<byte[]> payloads) throws IOException {
+        List<PrintJob> jobs = new ArrayList<>(payloads.size());
+        if (payloads.isEmpty()) {
+            return jobs;
+        }
+        long end;
+        synchronized (writeLock) {
+            ensureOpen();
+            end = 0;
+            for (byte[] data : payloads) {
+                PrintJob job = new PrintJob(nextJobId++, vendorId, productId, deviceId, data);
+                long seq = segmentSeq;
+                end = writeRecord(encodeAppend(job));
+                addPendingLocked(job, seq);
+                jobs.add(job);
+            }
+            enforceLimitsLocked(jobs.get(jobs.size() - 1).id);
+            compactLocked();
+        }
+        awaitDurable(end);
+        return jobs;
+    }
+
+    /**
+     * Marks a job as printed. Segments that no longer hold pending jobs are deleted.
+     */
+    public void complete(long jobId) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            if (!removePendingLocked(jobId)) {
+                return;
+            }
+            writeRecord(encodeMarker(TYPE_COMPLETE, jobId));
+            compactLocked();
+        }
+    }
+
+    /**
+     * Removes a pending job without printing it, e.g. because its failure was already reported to
+     * the caller or the user gave up on it. Unlike jobs dropped for the limits, it is not counted
+     * in {@link #droppedCount()}.
+     *
+     * @return whether the job was still pending.
+     */
+    public boolean cancel(long jobId) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            if (!removePendingLocked(jobId)) {
+                return false;
+            }
+            writeRecord(encodeMarker(TYPE_DROP, jobId));
+            compactLocked();
+            return true;
+        }
+    }
+
+    /**
+     * @return jobs that were appended but not completed, oldest first.
+     */
+    public List<PrintJob> pending() {
+        synchronized (writeLock) {
+            return new ArrayList<>(pendingJobs.values());
+        }
+    }
+
+    /**
+     * Re-sends the jobs that were already pending when the spool was opened through {@code transport},
+     * in order, completing the ones that were delivered in full. Jobs the transport rejects or only
+     * partly writes stay pending for the next replay. Jobs appended after opening are never replayed
+     * here, since their callers may still be sending them.
+     *
+     * @return number of jobs delivered.
+     */
+    public int replay(PrintTransport transport) throws IOException {
+        List<PrintJob> jobs = new ArrayList<>();
+        synchronized (writeLock) {
+            for (long id : recoveredIds) {
+                PrintJob job = pendingJobs.get(id);
+                if (job != null) {
+                    jobs.add(job);
+                }
+            }
+        }
+        int delivered = 0;
+        for (PrintJob job : jobs) {
+            if (transport.write(job) == job.data.length) {
+                complete(job.id);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * @return number of pending jobs dropped so far to stay within the count and size limits.
+     */
+    public long droppedCount() {
+        synchronized (writeLock) {
+            return droppedCount;
+        }
+    }
+
+    /**
+     * @return number of {@code fsync} calls issued so far, for benchmarking group commit.
+     */
+    public long syncCount() {
+        synchronized (syncLock) {
+            return syncCount;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                channel.force(false);
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private long writeRecord(byte[] body) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + body.length);
+        buffer.putInt(body.length).putInt((int) crc.getValue()).put(body);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        segmentWritten += buffer.limit();
+        writtenBytes += buffer.limit();
+        long end = writtenBytes;
+        if (segmentWritten >= segmentBytes) {
+            rollSegment();
+        }
+        return end;
+    }
+
+    private void awaitDurable(long target) throws IOException {
+        synchronized (syncLock) {
+            while (syncedBytes < target) {
+                if (!syncing) {
+                    break;
+                }
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for spool commit");
+                }
+            }
+            if (syncedBytes >= target) {
+                return;
+            }
+            syncing = true;
+        }
+
+        // This caller is the commit leader: force everything written so far in one go.
+        long upTo = 0;
+        boolean forced = false;
+        try {
+            FileChannel ch;
+            synchronized (writeLock) {
+                ch = channel;
+                upTo = writtenBytes;
+            }
+            try {
+                ch.force(false);
+            } catch (ClosedChannelException e) {
+                // The segment was rolled (and forced) or the spool was closed underneath us.
+                if (closed) {
+                    throw e;
+                }
+            }
+            forced = true;
+        } finally {
+            synchronized (syncLock) {
+                syncing = false;
+                if (forced) {
+                    syncCount++;
+                    syncedBytes = Math.max(syncedBytes, upTo);
+                }
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        channel.force(false);
+        file.close();
+        markSynced();
+        openSegment(segmentSeq + 1);
+    }
+
+    private void markSynced() {
+        synchronized (syncLock) {
+            syncCount++;
+            syncedBytes = Math.max(syncedBytes, writtenBytes);
+            syncLock.notifyAll();
+        }
+    }
+
+    private void openSegment(long seq) throws IOException {
+        File segment = segmentFile(seq);
+        file = new RandomAccessFile(segment, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        segmentSeq = seq;
+        segmentWritten = 0;
+        segments.add(seq);
+    }
+
+    private void addPendingLocked(PrintJob job, long seq) {
+        pendingSegments.put(job.id, seq);
+        pendingJobs.put(job.id, job);
+        pendingBytes += job.data.length;
+    }
+
+    private boolean removePendingLocked(long jobId) {
+        PrintJob job = pendingJobs.remove(jobId);
+        if (job == null) {
+            return false;
+        }
+        pendingSegments.remove(jobId);
+        pendingBytes -= job.data.length;
+        return true;
+    }
+
+    /**
+     * Drops the oldest pending jobs, except {@code keepId}, until the count and size limits hold.
+     */
+    private void enforceLimitsLocked(long keepId) throws IOException {
+        Iterator<Long> it = pendingJobs.keySet().iterator();
+        while ((pendingJobs.size() > maxPendingJobs || pendingBytes > maxPendingBytes) && it.hasNext()) {
+            long oldest = it.next();
+            if (oldest == keepId) {
+                continue;
+            }
+            PrintJob job = pendingJobs.get(oldest);
+            it.remove();
+            pendingSegments.remove(oldest);
+            pendingBytes -= job.data.length;
+            droppedCount++;
+            writeRecord(encodeMarker(TYPE_DROP, oldest));
+        }
+    }
+
+    /**
+     * Deletes every segment before the head, first copying the jobs still pending in it forward.
+     * Segments created by a roll during the copy are left for the next pass.
+     */
+    private void compactLocked() throws IOException {
+        long head = segmentSeq;
+        while (!segments.isEmpty() && segments.first() < head) {
+            long seq = segments.first();
+            List<PrintJob> live = new ArrayList<>();
+            for (Map.Entry<Long, Long> entry : pendingSegments.entrySet()) {
+                if (entry.getValue() == seq) {
+                    live.add(pendingJobs.get(entry.getKey()));
+                }
+            }
+            if (!live.isEmpty()) {
+                for (PrintJob job : live) {
+                    long target = segmentSeq;
+                    writeRecord(encodeAppend(job));
+                    pendingSegments.put(job.id, target);
+                }
+                // The copies must be durable before the only other copy is deleted
+                channel.force(false);
+                markSynced();
+            }
+            File segment = segmentFile(seq);
+            if (!segment.delete() && segment.exists()) {
+                break;
+            }
+            segments.pollFirst();
+        }
+    }
+
+    private File segmentFile(long seq) {
+        return new File(dir, String.format(Locale.US, "spool-%020d.log", seq));
+    }
+
+    /**
+     * Reads every segment left on disk, rebuilding the pending job table.
+     *
+     * @return the highest segment sequence number found, or 0.
+     */
+    private long recover() throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(f.getName());
+                if (matcher.matches()) {
+                    segments.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        for (long seq : segments) {
+            readSegment(seq);
+        }
+        return segments.isEmpty() ? 0 : segments.last();
+    }
+
+    private void readSegment(long seq) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile(seq))))) {
+            while (true) {
+                int length;
+                int checksum;
+                byte[] body;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_BYTES) {
+                        return;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    // Torn tail from a crash mid-write; everything before it is intact.
+                    return;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(body, 0, body.length);
+                if ((int) crc.getValue() != checksum) {
+                    return;
+                }
+                applyRecord(seq, ByteBuffer.wrap(body));
+            }
+        }
+    }
+
+    private void applyRecord(long seq, ByteBuffer body) {
+        byte type = body.get();
+        long jobId = body.getLong();
+        nextJobId = Math.max(nextJobId, jobId + 1);
+        if (type == TYPE_APPEND) {
+            String vendorId = readString(body);
+            String productId = readString(body);
+            String deviceId = readString(body);
+            byte[] data = new byte[body.getInt()];
+            body.get(data);
+            // A job copied forward by compaction appears again in a later segment
+            removePendingLocked(jobId);
+            addPendingLocked(new PrintJob(jobId, vendorId, productId, deviceId, data), seq);
+        } else if (type == TYPE_COMPLETE || type == TYPE_DROP) {
+            removePendingLocked(jobId);
+        }
+    }
+
+    private static byte[] encodeAppend(PrintJob job) {
+        byte[] vendorId = bytesOf(job.vendorId);
+        byte[] productId = bytesOf(job.productId);
+        byte[] deviceId = bytesOf(job.deviceId);
+        ByteBuffer body = ByteBuffer.allocate(1 + 8 + 4 * 4 + vendorId.length + productId.length + deviceId.length + job.data.length);
+        body.put(TYPE_APPEND).putLong(job.id);
+        body.putInt(vendorId.length).put(vendorId);
+        body.putInt(productId.length).put(productId);
+        body.putInt(deviceId.length).put(deviceId);
+        body.putInt(job.data.length).put(job.data);
+        return body.array();
+    }
+
+    private static byte[] encodeMarker(byte type, long jobId) {
+        ByteBuffer body = ByteBuffer.allocate(9);
+        body.put(type).putLong(jobId);
+        return body.array();
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
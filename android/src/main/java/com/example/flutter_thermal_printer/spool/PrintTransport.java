@@ -0,0 +1,14 @@
+package com.example.flutter_thermal_printer.spool;
+
+/**
+ * Sends a spooled job to its printer. Implemented by {@code UsbDevicesManager} on device and by a
+ * fake transport in tests and benchmarks.
+ */
+public interface PrintTransport {
+    /**
+     * @return number of bytes written, or a negative value if the job could not be delivered. The job
+     * only counts as delivered when this equals {@code job.data.length}; a short write (e.g. a transfer
+     * capped by the USB stack) leaves it pending.
+     */
+    int write(PrintJob job);
+}
@@ -0,0 +1,67 @@
+package com.example.flutter_thermal_printer.callerid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.junit.Test;
+
+public class CallHistoryTest {
+  private static CallerIdRecord call(String caller, String datetime, long at) {
+    return new CallerIdRecord('A', caller, "", datetime, at);
+  }
+
+  @Test
+  public void deduperDropsResendsWithinWindow() {
+    CallerIdDeduper deduper = new CallerIdDeduper(10_000);
+    assertTrue(deduper.accept(call("555", "10191230", 0), 0));
+    assertFalse(deduper.accept(call("555", "10191230", 2_000), 2_000));
+    assertTrue(deduper.accept(new CallerIdRecord('B', "555", "", "10191230", 2_000), 2_000));
+    assertTrue(deduper.accept(call("666", "10191230", 3_000), 3_000));
+    assertTrue(deduper.accept(call("555", "10191230", 10_000), 10_000));
+  }
+
+  @Test
+  public void deduperWindowIgnoresWallClockJumps() {
+    CallerIdDeduper deduper = new CallerIdDeduper(10_000);
+    assertTrue(deduper.accept(call("555", "10191230", 1_000_000), 0));
+    // The wall clock went back an hour; the monotonic clock says 11 s passed
+    assertTrue(deduper.accept(call("555", "10191230", 1_000_000 - 3_600_000), 11_000));
+  }
+
+  @Test
+  public void historyKeepsMostRecentNewestFirst() {
+    CallHistory history = new CallHistory(3);
+    history.add(call("1", "a", 0));
+    history.add(call("2", "b", 1));
+    history.add(call("1", "c", 2));
+    history.add(call("3", "d", 3));
+
+    List<CallerIdRecord> recent = history.recent(10);
+    assertEquals(3, recent.size());
+    assertEquals("d", recent.get(0).datetime);
+    assertEquals("b", recent.get(2).datetime);
+    assertEquals(1, history.recent(1).size());
+    assertTrue(history.recent(-1).isEmpty());
+    assertTrue(history.forNumber("1", -1).isEmpty());
+  }
+
+  @Test
+  public void numberIndexFollowsEvictions() {
+    CallHistory history = new CallHistory(3);
+    history.add(call("1", "a", 0));
+    history.add(call("1", "b", 1));
+    history.add(call("2", "c", 2));
+    history.add(call("2", "d", 3));
+
+    List<CallerIdRecord> fromOne = history.forNumber("1", 10);
+    assertEquals(1, fromOne.size());
+    assertEquals("b", fromOne.get(0).datetime);
+    assertEquals("d", history.forNumber("2", 1).get(0).datetime);
+
+    history.add(call("3", "e", 4));
+    assertTrue(history.forNumber("1", 10).isEmpty());
+    assertTrue(history.forNumber("unknown", 10).isEmpty());
+  }
+}
@@ -0,0 +1,83 @@
+package com.example.flutter_thermal_printer.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+
+/**
+ * Checks the encoder against golden bytes. The same bytes are decoded in
+ * {@code test/event_codec_test.dart}; change both together.
+ */
+public class EventCodecTest {
+  static final byte[] GOLDEN_DEVICE_LIST = {
+      1, 1, 0, 1,
+      0x04, (byte) 0x83, 0x57, 0x40,
+      0, 0, 0x03, (byte) 0xEA,
+      5,
+      0, 7, 'P', 'r', 'i', 'n', 't', 'e', 'r',
+  };
+
+  static final byte[] GOLDEN_CALLER_ID = {
+      1, 3, 0, 1,
+      'A',
+      8, '1', '0', '1', '9', '1', '2', '3', '0',
+      3, '1', '2', '3',
+      0,
+  };
+
+  @Test
+  public void deviceListMatchesGoldenBytes() {
+    byte[] encoded = new EventCodec.DeviceWriter(EventCodec.TYPE_DEVICE_LIST)
+        .device(1155, 22336, 1002, "Printer", true, false)
+        .finish();
+
+    assertArrayEquals(GOLDEN_DEVICE_LIST, encoded);
+  }
+
+  @Test
+  public void callerIdMatchesGoldenBytes() {
+    assertArrayEquals(GOLDEN_CALLER_ID, EventCodec.encodeCallerId('A', "123", "", "10191230"));
+  }
+
+  @Test
+  public void deviceEventWithoutNameClearsTheFlag() {
+    byte[] encoded = EventCodec.encodeDevice(1, 2, 3, null, false, true);
+
+    assertEquals(EventCodec.TYPE_DEVICE_EVENT, encoded[1]);
+    assertEquals(EventCodec.FLAG_REMOVED, encoded[12]);
+    assertEquals(15, encoded.length);
+  }
+
+  @Test
+  public void longStringsAreCutOnACharacterBoundary() {
+    // 2-byte characters: 255 bytes would end halfway through one
+    char[] caller = new char[200];
+    Arrays.fill(caller, '\u00E9');
+    byte[] encoded = EventCodec.encodeCallerId('A', new String(caller), "", "");
+
+    int callerLength = encoded[6] & 0xFF;
+    assertEquals(254, callerLength);
+    String decoded = new String(encoded, 7, callerLength, StandardCharsets.UTF_8);
+    assertEquals(127, decoded.length());
+    assertTrue(decoded.indexOf('\uFFFD') < 0);
+  }
+
+  @Test
+  public void longNamesKeepWholeCodePoints() {
+    // 4-byte characters (surrogate pairs in Java)
+    StringBuilder name = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      name.appendCodePoint(0x1F5A8);
+    }
+    byte[] encoded = EventCodec.encodeDevice(1, 2, 3, name.toString(), true, false);
+
+    int nameLength = (encoded[13] & 0xFF) << 8 | (encoded[14] & 0xFF);
+    assertEquals(0xFFFF - 0xFFFF % 4, nameLength);
+    String decoded = new String(encoded, 15, nameLength, StandardCharsets.UTF_8);
+    assertTrue(decoded.indexOf('\uFFFD') < 0);
+  }
+}
@@ -0,0 +1,150 @@
+package com.example.flutter_thermal_printer.pacing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Calibrates and paces against a simulated printer on a fake clock.
+ */
+public class ThroughputPacingTest {
+  static class FakeClock implements PacedWriter.Clock {
+    long now;
+
+    @Override
+    public long nanoTime() {
+      return now;
+    }
+
+    @Override
+    public void sleepNanos(long nanos) {
+      now += nanos;
+    }
+  }
+
+  /**
+   * A printer with a receive buffer that burns at a fixed rate. When {@code blocking} it holds the
+   * transfer until there is room, like a well-behaved device; otherwise it drops what doesn't fit.
+   */
+  static class SimulatedPrinter implements PacedWriter.Sink {
+    final FakeClock clock;
+    final int bufferBytes;
+    final long bytesPerSecond;
+    final boolean blocking;
+    double buffered;
+    long lastNanos;
+    long dropped;
+
+    SimulatedPrinter(FakeClock clock, int bufferBytes, long bytesPerSecond, boolean blocking) {
+      this.clock = clock;
+      this.bufferBytes = bufferBytes;
+      this.bytesPerSecond = bytesPerSecond;
+      this.blocking = blocking;
+    }
+
+    private void drain() {
+      buffered = Math.max(0, buffered - (clock.now - lastNanos) * bytesPerSecond / 1e9);
+      lastNanos = clock.now;
+    }
+
+    @Override
+    public int write(byte[] data, int offset, int length, int timeoutMs) {
+      clock.now += 100_000; // bus time per transfer
+      drain();
+      double overflow = buffered + length - bufferBytes;
+      if (overflow > 0) {
+        if (blocking) {
+          clock.now += (long) Math.ceil(overflow * 1e9 / bytesPerSecond);
+          drain();
+        } else {
+          dropped += (long) Math.ceil(overflow);
+        }
+      }
+      buffered = Math.min(bufferBytes, buffered + length);
+      return length;
+    }
+  }
+
+  @Test
+  public void calibrationMeasuresSustainedRateAndBuffer() throws IOException {
+    FakeClock clock = new FakeClock();
+    SimulatedPrinter printer = new SimulatedPrinter(clock, 8 * 1024, 12_000, true);
+    ThroughputProfile profile = ThroughputCalibrator.calibrate(1155, 22336, printer,
+        ThroughputCalibrator.testPattern(48 * 1024), 1024, clock);
+
+    assertTrue(profile.toString(), Math.abs(profile.bytesPerSecond - 12_000) < 600);
+    assertTrue(profile.toString(), profile.burstBytes > 4 * 1024 && profile.burstBytes < 12 * 1024);
+    assertTrue(profile.chunkTimeoutMillis() >= 2 * 1024 * 1000 / 12_000);
+  }
+
+  @Test
+  public void pacedWriterNeverOverrunsACalibratedPrinter() throws IOException {
+    FakeClock clock = new FakeClock();
+    ThroughputProfile profile = ThroughputCalibrator.calibrate(1, 2,
+        new SimulatedPrinter(clock, 8 * 1024, 12_000, true), ThroughputCalibrator.testPattern(48 * 1024), 1024, clock);
+
+    SimulatedPrinter dropping = new SimulatedPrinter(clock, 8 * 1024, 12_000, false);
+    dropping.lastNanos = clock.now;
+    PacedWriter writer = new PacedWriter(profile, clock);
+    long start = clock.now;
+    byte[] receipt = new byte[40 * 1024];
+    assertEquals(receipt.length, writer.write(dropping, receipt, 0));
+    assertEquals(receipt.length, writer.write(dropping, receipt, 0));
+
+    assertEquals(0, dropping.dropped);
+    double seconds = (clock.now - start) / 1e9;
+    double ideal = (2 * receipt.length - 8 * 1024) / 12_000.0;
+    assertTrue("took " + seconds + "s, ideal " + ideal + "s", seconds < ideal * 1.25);
+  }
+
+  @Test
+  public void unpacedWritesStayWithinTheTransferCap() {
+    List<Integer> transfers = new ArrayList<>();
+    byte[] receipt = new byte[40 * 1024];
+    int written = PacedWriter.writeUnpaced((data, offset, length, timeoutMs) -> {
+      transfers.add(length);
+      return length;
+    }, receipt, 5000);
+
+    assertEquals(receipt.length, written);
+    assertEquals(Arrays.asList(16 * 1024, 16 * 1024, 8 * 1024), transfers);
+  }
+
+  @Test
+  public void unpacedWritesResumeAfterShortTransfersAndStopOnFailure() {
+    byte[] receipt = new byte[10_000];
+    assertEquals(receipt.length, PacedWriter.writeUnpaced(
+        (data, offset, length, timeoutMs) -> Math.min(length, 3000), receipt, 5000));
+
+    int[] calls = {0};
+    assertEquals(4096, PacedWriter.writeUnpaced(
+        (data, offset, length, timeoutMs) -> ++calls[0] == 2 ? -1 : 4096, receipt, 5000));
+    assertEquals(2, calls[0]);
+
+    assertEquals(-1, PacedWriter.writeUnpaced((data, offset, length, timeoutMs) -> -1, receipt, 5000));
+  }
+
+  @Test
+  public void pacedWritesReportBytesSentBeforeAFailure() {
+    PacedWriter writer = new PacedWriter(new ThroughputProfile(1, 2, 12_000, 8192, 1024, 40), new FakeClock());
+    byte[] receipt = new byte[10_000];
+    int[] calls = {0};
+    assertEquals(3 * 1024, writer.write((data, offset, length, timeoutMs) -> ++calls[0] == 4 ? -1 : length, receipt, 0));
+    assertEquals(-1, writer.write((data, offset, length, timeoutMs) -> 0, receipt, 0));
+  }
+
+  @Test
+  public void profileRoundTripsThroughItsStoredForm() {
+    ThroughputProfile profile = new ThroughputProfile(1, 2, 12_000, 8192, 1024, 40);
+    ThroughputProfile decoded = ThroughputProfile.decode(1, 2, profile.encode());
+    assertEquals(profile.encode(), decoded.encode());
+    assertNull(ThroughputProfile.decode(1, 2, "0;1;2;3;4"));
+    assertNull(ThroughputProfile.decode(1, 2, null));
+  }
+}
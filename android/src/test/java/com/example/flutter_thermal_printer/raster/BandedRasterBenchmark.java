@@ -0,0 +1,94 @@
+package com.example.flutter_thermal_printer.raster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares encode-then-send, sequential banded and parallel banded image printing on the plain JVM,
+ * writing to a fake printer that drains at a fixed USB rate. Reports time to first byte and total job time.
+ * <p>
+ * Run with {@code java -cp <test classes>:<main classes>
+ * com.example.flutter_thermal_printer.raster.BandedRasterBenchmark [width] [height] [bandRows] [threads] [bytesPerSecond]}.
+ */
+public class BandedRasterBenchmark {
+  public static void main(String[] args) throws Exception {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 576;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    int bandRows = args.length > 2 ? Integer.parseInt(args[2]) : BandedRasterEncoder.DEFAULT_BAND_ROWS;
+    int threads = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    long bytesPerSecond = args.length > 4 ? Long.parseLong(args[4]) : 1_000_000;
+
+    BandedRasterEncoder encoder = new BandedRasterEncoder(BandedRasterEncoderTest.ArraySource.gradient(width, height), bandRows);
+    System.out.printf("%dx%d, %d bands of %d rows, %d workers, printer at %d B/s%n",
+        width, height, encoder.bandCount(), bandRows, threads, bytesPerSecond);
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      // Warm up the JIT before timing
+      encoder.encodeSequential(new TimedSink(0));
+      encoder.encode(pool, threads * 2, new TimedSink(0));
+
+      runWholeImage(encoder, bytesPerSecond);
+      run("sequential", encoder, null, 0, bytesPerSecond);
+      run("parallel", encoder, pool, threads * 2, bytesPerSecond);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  // Baseline: encode every band before sending anything, as when the job is built up front
+  private static void runWholeImage(BandedRasterEncoder encoder, long bytesPerSecond) {
+    TimedSink sink = new TimedSink(bytesPerSecond);
+    long start = System.nanoTime();
+    List<byte[]> bands = new ArrayList<>();
+    for (int band = 0; band < encoder.bandCount(); band++) {
+      bands.add(encoder.encodeBand(band));
+    }
+    long bytes = 0;
+    for (byte[] band : bands) {
+      bytes += sink.write(band);
+    }
+    report("whole image", bytes, start, sink);
+  }
+
+  private static void run(String label, BandedRasterEncoder encoder, ExecutorService pool, int maxInFlight,
+                          long bytesPerSecond) throws IOException {
+    TimedSink sink = new TimedSink(bytesPerSecond);
+    long start = System.nanoTime();
+    long bytes = pool == null ? encoder.encodeSequential(sink) : encoder.encode(pool, maxInFlight, sink);
+    report(label, bytes, start, sink);
+  }
+
+  private static void report(String label, long bytes, long start, TimedSink sink) {
+    long elapsed = System.nanoTime() - start;
+    System.out.printf("%-12s %9d bytes  first byte %8.2f ms  total %9.2f ms%n",
+        label, bytes, (sink.firstByteNanos - start) / 1e6, elapsed / 1e6);
+  }
+
+  /**
+   * Takes as long as a printer draining at {@code bytesPerSecond} would to accept each band.
+   */
+  static class TimedSink implements BandedRasterEncoder.BandSink {
+    final long bytesPerSecond;
+    long firstByteNanos;
+
+    TimedSink(long bytesPerSecond) {
+      this.bytesPerSecond = bytesPerSecond;
+    }
+
+    @Override
+    public int write(byte[] band) {
+      if (firstByteNanos == 0) {
+        firstByteNanos = System.nanoTime();
+      }
+      if (bytesPerSecond > 0) {
+        LockSupport.parkNanos(band.length * 1_000_000_000L / bytesPerSecond);
+      }
+      return band.length;
+    }
+  }
+}
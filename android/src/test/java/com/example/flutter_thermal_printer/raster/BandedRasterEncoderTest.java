@@ -0,0 +1,202 @@
+package com.example.flutter_thermal_printer.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Encodes synthetic images and checks the parallel pipeline against the sequential encoder.
+ */
+public class BandedRasterEncoderTest {
+  static final int WHITE = 0xFFFFFFFF;
+  static final int BLACK = 0xFF000000;
+
+  /**
+   * An in-memory ARGB image.
+   */
+  static class ArraySource implements PixelSource {
+    final int width;
+    final int height;
+    final int[] pixels;
+
+    ArraySource(int width, int height) {
+      this.width = width;
+      this.height = height;
+      this.pixels = new int[width * height];
+      Arrays.fill(pixels, WHITE);
+    }
+
+    /**
+     * A diagonal grey gradient, so every band dithers differently.
+     */
+    static ArraySource gradient(int width, int height) {
+      ArraySource source = new ArraySource(width, height);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          int grey = ((x + y) * 255 / (width + height)) & 0xFF;
+          source.pixels[y * width + x] = 0xFF000000 | grey << 16 | grey << 8 | grey;
+        }
+      }
+      return source;
+    }
+
+    @Override
+    public int width() {
+      return width;
+    }
+
+    @Override
+    public int height() {
+      return height;
+    }
+
+    @Override
+    public void getRows(int[] out, int y, int rows) {
+      System.arraycopy(pixels, y * width, out, 0, rows * width);
+    }
+  }
+
+  static class CollectingSink implements BandedRasterEncoder.BandSink {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int bands;
+
+    @Override
+    public int write(byte[] band) {
+      out.write(band, 0, band.length);
+      bands++;
+      return band.length;
+    }
+  }
+
+  @Test
+  public void packsPixelsMostSignificantBitFirstAndPadsWithWhite() {
+    ArraySource source = new ArraySource(10, 2);
+    source.pixels[0] = BLACK;
+    source.pixels[9] = BLACK;
+    source.pixels[10 + 1] = BLACK;
+
+    byte[] band = new BandedRasterEncoder(source, 8).encodeBand(0);
+
+    assertArrayEquals(new byte[]{0x1D, 'v', '0', 0, 2, 0, 2, 0, (byte) 0x80, 0x40, 0x40, 0x00}, band);
+  }
+
+  @Test
+  public void transparentPixelsPrintWhite() {
+    ArraySource source = new ArraySource(8, 1);
+    Arrays.fill(source.pixels, 0x00000000);
+
+    byte[] band = new BandedRasterEncoder(source, 8).encodeBand(0);
+
+    assertEquals(0, band[8]);
+  }
+
+  @Test
+  public void midGreyDithersToHalfCoverage() {
+    ArraySource source = new ArraySource(8, 8);
+    Arrays.fill(source.pixels, 0xFF808080);
+
+    byte[] band = new BandedRasterEncoder(source, 8).encodeBand(0);
+
+    int black = 0;
+    for (int i = 8; i < band.length; i++) {
+      black += Integer.bitCount(band[i] & 0xFF);
+    }
+    assertEquals(32, black);
+  }
+
+  @Test
+  public void lastBandHoldsTheRemainingRows() {
+    BandedRasterEncoder encoder = new BandedRasterEncoder(new ArraySource(16, 70), 32);
+
+    assertEquals(3, encoder.bandCount());
+    byte[] last = encoder.encodeBand(2);
+    assertEquals(6, last[6]);
+    assertEquals(8 + 2 * 6, last.length);
+  }
+
+  @Test
+  public void parallelOutputMatchesSequential() throws IOException {
+    ArraySource source = ArraySource.gradient(203, 1001);
+    BandedRasterEncoder encoder = new BandedRasterEncoder(source, 24);
+    CollectingSink sequential = new CollectingSink();
+    CollectingSink parallel = new CollectingSink();
+    ExecutorService pool = Executors.newFixedThreadPool(3);
+    try {
+      long sequentialBytes = encoder.encodeSequential(sequential);
+      long parallelBytes = encoder.encode(pool, 4, parallel);
+
+      assertEquals(sequentialBytes, parallelBytes);
+      assertEquals(encoder.bandCount(), parallel.bands);
+      assertArrayEquals(sequential.out.toByteArray(), parallel.out.toByteArray());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Slow source that counts readers, to catch band tasks outliving {@code encode()}.
+   */
+  static class SlowSource extends ArraySource {
+    final AtomicInteger readers = new AtomicInteger();
+    final AtomicInteger maxReadersAfterReturn = new AtomicInteger();
+    volatile boolean returned;
+
+    SlowSource(int width, int height) {
+      super(width, height);
+    }
+
+    @Override
+    public void getRows(int[] out, int y, int rows) {
+      readers.incrementAndGet();
+      try {
+        Thread.sleep(5);
+        if (returned) {
+          maxReadersAfterReturn.incrementAndGet();
+        }
+        super.getRows(out, y, rows);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        readers.decrementAndGet();
+      }
+    }
+  }
+
+  @Test
+  public void abortedJobWaitsForRunningBands() throws Exception {
+    SlowSource source = new SlowSource(64, 64 * 16);
+    BandedRasterEncoder encoder = new BandedRasterEncoder(source, 16);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      assertEquals(-1, encoder.encode(pool, 8, band -> -1));
+      assertEquals(0, source.readers.get());
+      source.returned = true;
+      Thread.sleep(50);
+      assertEquals(0, source.maxReadersAfterReturn.get());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void failedWriteStopsTheJob() throws IOException {
+    BandedRasterEncoder encoder = new BandedRasterEncoder(ArraySource.gradient(64, 640), 16);
+    int[] writes = {0};
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      long written = encoder.encode(pool, 4, band -> ++writes[0] == 3 ? -1 : band.length);
+
+      assertEquals(-1, written);
+      assertEquals(3, writes[0]);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.example.flutter_thermal_printer.spool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures spool throughput on the plain JVM against a fake transport.
+ * <p>
+ * The single-printer cases mirror a device lane, where appends for one printer are serialised: one
+ * {@code fsync} per job when each is spooled on its own, one per batch with {@link PrintSpool#appendAll}.
+ * The threaded case shows group commit across unrelated printers.
+ * <p>
+ * Run with {@code java -cp <test classes>:<main classes>
+ * com.example.flutter_thermal_printer.spool.PrintSpoolBenchmark [jobs] [threads] [bytes] [batch]}.
+ */
+public class PrintSpoolBenchmark {
+  public static void main(String[] args) throws Exception {
+    int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    int size = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+    int batch = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+    run("1 printer, per job", jobs, 1, 1, size);
+    run("1 printer, batch " + batch, jobs, 1, batch, size);
+    run(threads + " printers", jobs, threads, 1, size);
+  }
+
+  private static void run(String label, int jobs, int threads, int batch, int size) throws Exception {
+    File dir = Files.createTempDirectory("spool-bench").toFile();
+    final PrintSpool spool = new PrintSpool(dir);
+    final PrintSpoolTest.FakeTransport transport = new PrintSpoolTest.FakeTransport();
+    final List<byte[]> payloads = new ArrayList<>();
+    for (int i = 0; i < batch; i++) {
+      payloads.add(new byte[size]);
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int i = 0; i < jobs; i += batch) {
+      futures.add(pool.submit(() -> {
+        for (PrintJob job : spool.appendAll("1155", "22336", "1002", payloads)) {
+          synchronized (transport) {
+            transport.write(job);
+          }
+          spool.complete(job.id);
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    long elapsed = System.nanoTime() - start;
+    pool.shutdown();
+
+    int spooled = (jobs + batch - 1) / batch * batch;
+    System.out.printf("%-20s %6d jobs  %8.1f jobs/s  %6d fsyncs (%.2f jobs/fsync)%n",
+        label, spooled, spooled / (elapsed / 1e9), spool.syncCount(), spooled / (double) Math.max(1, spool.syncCount()));
+    spool.close();
+    deleteRecursively(dir);
+  }
+
+  private static void deleteRecursively(File file) throws IOException {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    Files.deleteIfExists(file.toPath());
+  }
+}
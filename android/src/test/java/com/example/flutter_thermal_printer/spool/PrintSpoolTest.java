@@ -0,0 +1,259 @@
+package com.example.flutter_thermal_printer.spool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/**
+ * Exercises the spool on the plain JVM with a fake transport, so it runs without a device.
+ */
+public class PrintSpoolTest {
+  /**
+   * Records every job it is handed; optionally rejects them all like an unplugged printer, or caps
+   * each transfer like the pre-Android-9 USB stack.
+   */
+  static class FakeTransport implements PrintTransport {
+    final List<PrintJob> written = new ArrayList<>();
+    boolean offline;
+    int maxTransfer = Integer.MAX_VALUE;
+
+    @Override
+    public int write(PrintJob job) {
+      if (offline) {
+        return -1;
+      }
+      written.add(job);
+      return Math.min(job.data.length, maxTransfer);
+    }
+  }
+
+  private static File tempDir() throws IOException {
+    return Files.createTempDirectory("spool").toFile();
+  }
+
+  private static byte[] receipt(int n) {
+    return ("receipt " + n + "\n").getBytes();
+  }
+
+  @Test
+  public void pendingJobsSurviveReopen() throws IOException {
+    File dir = tempDir();
+    PrintSpool spool = new PrintSpool(dir);
+    PrintJob printed = spool.append("1155", "22336", "1002", receipt(1));
+    PrintJob lost = spool.append("1155", "22336", "1002", receipt(2));
+    spool.complete(printed.id);
+    spool.close();
+
+    PrintSpool reopened = new PrintSpool(dir);
+    List<PrintJob> pending = reopened.pending();
+    assertEquals(1, pending.size());
+    assertEquals(lost.id, pending.get(0).id);
+    assertEquals("1002", pending.get(0).deviceId);
+    assertArrayEquals(receipt(2), pending.get(0).data);
+
+    PrintJob next = reopened.append("1155", "22336", "1002", receipt(3));
+    assertTrue(next.id > lost.id);
+    reopened.close();
+  }
+
+  @Test
+  public void replayCompletesDeliveredJobsOnly() throws IOException {
+    File dir = tempDir();
+    PrintSpool previous = new PrintSpool(dir);
+    previous.append("1", "2", "3", receipt(1));
+    previous.append("1", "2", "3", receipt(2));
+    previous.close();
+
+    PrintSpool spool = new PrintSpool(dir);
+    FakeTransport transport = new FakeTransport();
+    transport.offline = true;
+    assertEquals(0, spool.replay(transport));
+    assertEquals(2, spool.pending().size());
+
+    transport.offline = false;
+    transport.maxTransfer = 4;
+    assertEquals(0, spool.replay(transport));
+    assertEquals(2, spool.pending().size());
+
+    transport.written.clear();
+    transport.maxTransfer = Integer.MAX_VALUE;
+    assertEquals(2, spool.replay(transport));
+    assertEquals(2, transport.written.size());
+    assertArrayEquals(receipt(1), transport.written.get(0).data);
+    assertTrue(spool.pending().isEmpty());
+    spool.close();
+
+    PrintSpool reopened = new PrintSpool(dir);
+    assertTrue(reopened.pending().isEmpty());
+    reopened.close();
+  }
+
+  @Test
+  public void completedSegmentsAreCompacted() throws IOException {
+    File dir = tempDir();
+    PrintSpool spool = new PrintSpool(dir, 256);
+    for (int i = 0; i < 50; i++) {
+      PrintJob job = spool.append("1", "2", "3", receipt(i));
+      spool.complete(job.id);
+    }
+    File[] segments = dir.listFiles();
+    assertEquals(1, segments.length);
+    spool.close();
+  }
+
+  @Test
+  public void jobsAppendedAfterOpenAreNotReplayed() throws IOException {
+    File dir = tempDir();
+    PrintSpool previous = new PrintSpool(dir);
+    PrintJob recovered = previous.append("1", "2", "3", receipt(1));
+    previous.close();
+
+    PrintSpool spool = new PrintSpool(dir);
+    spool.append("1", "2", "3", receipt(2));
+    FakeTransport transport = new FakeTransport();
+    assertEquals(1, spool.replay(transport));
+    assertEquals(1, transport.written.size());
+    assertEquals(recovered.id, transport.written.get(0).id);
+    assertEquals(1, spool.pending().size());
+    spool.close();
+  }
+
+  @Test
+  public void undeliverableJobDoesNotPinSegments() throws IOException {
+    File dir = tempDir();
+    PrintSpool spool = new PrintSpool(dir, 256);
+    PrintJob stuck = spool.append("1", "2", "3", receipt(-1));
+    for (int i = 0; i < 500; i++) {
+      PrintJob job = spool.append("1", "2", "3", receipt(i));
+      spool.complete(job.id);
+    }
+    assertTrue(dir.listFiles().length <= 2);
+    assertEquals(1, spool.pending().size());
+    spool.close();
+
+    PrintSpool reopened = new PrintSpool(dir, 256);
+    List<PrintJob> pending = reopened.pending();
+    assertEquals(1, pending.size());
+    assertEquals(stuck.id, pending.get(0).id);
+    assertArrayEquals(receipt(-1), pending.get(0).data);
+    reopened.close();
+  }
+
+  @Test
+  public void oldestPendingJobsAreDroppedPastTheLimits() throws IOException {
+    File dir = tempDir();
+    PrintSpool spool = new PrintSpool(dir, PrintSpool.DEFAULT_SEGMENT_BYTES, 3, 1024);
+    for (int i = 0; i < 5; i++) {
+      spool.append("1", "2", "3", receipt(i));
+    }
+    assertEquals(3, spool.pending().size());
+    assertEquals(2, spool.droppedCount());
+    assertArrayEquals(receipt(2), spool.pending().get(0).data);
+
+    PrintJob large = spool.append("1", "2", "3", new byte[2000]);
+    assertEquals(1, spool.pending().size());
+    assertEquals(large.id, spool.pending().get(0).id);
+    spool.close();
+
+    PrintSpool reopened = new PrintSpool(dir, PrintSpool.DEFAULT_SEGMENT_BYTES, 3, 1024);
+    assertEquals(1, reopened.pending().size());
+    reopened.close();
+  }
+
+  @Test
+  public void tornTailIsIgnored() throws IOException {
+    File dir = tempDir();
+    PrintSpool spool = new PrintSpool(dir);
+    spool.append("1", "2", "3", receipt(1));
+    spool.close();
+
+    File segment = dir.listFiles()[0];
+    byte[] bytes = Files.readAllBytes(segment.toPath());
+    byte[] torn = new byte[bytes.length + 5];
+    System.arraycopy(bytes, 0, torn, 0, bytes.length);
+    Files.write(segment.toPath(), torn);
+
+    PrintSpool reopened = new PrintSpool(dir);
+    assertEquals(1, reopened.pending().size());
+    reopened.close();
+  }
+
+  @Test
+  public void concurrentAppendsShareCommits() throws Exception {
+    final int threads = 8;
+    final int rounds = 25;
+    File dir = tempDir();
+    final PrintSpool spool = new PrintSpool(dir);
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(pool.submit(() -> {
+        // Release every thread at once each round so the appends really overlap
+        for (int round = 0; round < rounds; round++) {
+          barrier.await();
+          spool.append("1", "2", "3", receipt(round));
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pool.shutdown();
+    assertEquals(threads * rounds, spool.pending().size());
+    assertTrue("expected shared fsyncs, got " + spool.syncCount(), spool.syncCount() < threads * rounds);
+    spool.close();
+  }
+
+  @Test
+  public void appendAllCommitsABatchOnce() throws IOException {
+    File dir = tempDir();
+    PrintSpool spool = new PrintSpool(dir);
+    List<byte[]> payloads = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      payloads.add(receipt(i));
+    }
+    long before = spool.syncCount();
+    List<PrintJob> jobs = spool.appendAll("1", "2", "3", payloads);
+    assertEquals(1, spool.syncCount() - before);
+    assertEquals(20, jobs.size());
+    assertTrue(jobs.get(1).id > jobs.get(0).id);
+    spool.close();
+
+    PrintSpool reopened = new PrintSpool(dir);
+    assertEquals(20, reopened.pending().size());
+    assertArrayEquals(receipt(19), reopened.pending().get(19).data);
+    reopened.close();
+  }
+
+  @Test
+  public void cancelledJobsAreNotReplayed() throws IOException {
+    File dir = tempDir();
+    PrintSpool previous = new PrintSpool(dir);
+    PrintJob cancelled = previous.append("1", "2", "3", receipt(1));
+    previous.append("1", "2", "3", receipt(2));
+    assertTrue(previous.cancel(cancelled.id));
+    assertFalse(previous.cancel(cancelled.id));
+    previous.close();
+
+    PrintSpool spool = new PrintSpool(dir);
+    FakeTransport transport = new FakeTransport();
+    assertEquals(1, spool.replay(transport));
+    assertArrayEquals(receipt(2), transport.written.get(0).data);
+    assertEquals(0, spool.droppedCount());
+    spool.close();
+  }
+}
@@ -7,6 +7,8 @@ import 'package:flutter/services.dart';
 import 'package:flutter_blue_classic/flutter_blue_classic.dart';
 import 'package:network_info_plus/network_info_plus.dart';
 import 'package:flutter_thermal_printer/flutter_thermal_printer_platform_interface.dart';
+import 'package:flutter_thermal_printer/utils/event_codec.dart';
+import 'package:flutter_thermal_printer/utils/print_batch.dart';
 import 'package:flutter_thermal_printer/utils/printer.dart';
 
 class OtherPrinterManager {
@@ -42,9 +44,11 @@ class OtherPrinterManager {
 
   static const String _deviceChannelName = 'flutter_thermal_printer/device_events';
   static const String _callerIdChannelName = 'flutter_thermal_printer/callerid_events';
+  static const String _warmUpChannelName = 'flutter_thermal_printer/warmup_events';
 
   final EventChannel _deviceEventChannel = EventChannel(_deviceChannelName);
   final EventChannel _callerIdEventChannel = EventChannel(_callerIdChannelName);
+  final EventChannel _warmUpEventChannel = EventChannel(_warmUpChannelName);
 
   bool get isIos => !kIsWeb && (Platform.isIOS || Platform.isMacOS);
 
@@ -69,7 +73,7 @@ class OtherPrinterManager {
   Future<bool> startListening(DeviceModel device) async {
     _callerIdSubscription?.cancel();
     _callerIdSubscription = _callerIdEventChannel.receiveBroadcastStream().listen((event) {
-      final map = Map<String, dynamic>.from(event);
+      final map = EventCodec.decodeCallerId(event);
       log("Received Caller ID: ${map['caller']} at ${map['datetime']}");
       _callerIdStream.add(map);
     });
@@ -87,6 +91,14 @@ class OtherPrinterManager {
     return FlutterThermalPrinterPlatform.instance.stopListening();
   }
 
+  // Warm-up reports: {devices, printers, warmConnections, elapsedMs}
+  Stream<Map<String, dynamic>> get warmUpStream =>
+      _warmUpEventChannel.receiveBroadcastStream().map((event) => Map<String, dynamic>.from(event));
+
+  Future<bool> setWarmUpEnabled(bool enabled) {
+    return FlutterThermalPrinterPlatform.instance.setWarmUpEnabled(enabled);
+  }
+
   // Stop scanning for BLE devices
   Future<void> stopScan({
     bool stopBle = true,
@@ -313,6 +325,45 @@ class OtherPrinterManager {
     }
   }
 
+  // Android USB jobs go to the native side in one round trip; other printers are printed one by one
+  Future<List<PrintBatchResult>> printBatch(List<PrintBatchJob> jobs) async {
+    final results = List<PrintBatchResult?>.filled(jobs.length, null);
+    final usbIndices = <int>[];
+    final otherIndices = <int>[];
+    for (var i = 0; i < jobs.length; i++) {
+      if (Platform.isAndroid && jobs[i].device.connectionType == ConnectionType.USB) {
+        usbIndices.add(i);
+      } else {
+        otherIndices.add(i);
+      }
+    }
+
+    Future<void> printUsb() async {
+      if (usbIndices.isEmpty) return;
+      final usbResults = await FlutterThermalPrinterPlatform.instance.printBatch(
+        usbIndices.map((i) => jobs[i]).toList(),
+      );
+      for (var i = 0; i < usbIndices.length; i++) {
+        results[usbIndices[i]] = usbResults[i];
+      }
+    }
+
+    Future<void> printOthers() async {
+      for (final i in otherIndices) {
+        final stopwatch = Stopwatch()..start();
+        try {
+          await printData(jobs[i].device, jobs[i].data, longData: true);
+          results[i] = PrintBatchResult(bytesWritten: jobs[i].data.length, latency: stopwatch.elapsed);
+        } catch (e) {
+          results[i] = PrintBatchResult(bytesWritten: -1, latency: stopwatch.elapsed, error: e.toString());
+        }
+      }
+    }
+
+    await Future.wait([printUsb(), printOthers()]);
+    return results.cast<PrintBatchResult>();
+  }
+
   // 分片发送数据到蓝牙设备
   Future<void> _sendDataInChunks(BluetoothConnection bt, List<int> bytes) async {
     const int chunkSize = 512; // 每片1024字节，平衡速度和稳定性
@@ -368,41 +419,20 @@ class OtherPrinterManager {
     try {
       final devices = await FlutterThermalPrinterPlatform.instance.startUsbScan();
 
-      List<DeviceModel> usbPrinters = [];
-      for (var map in devices) {
-        final deviceId = map['deviceId'].toString();
-        final printer = DeviceModel(
-          vendorId: map['vendorId'].toString(),
-          productId: map['productId'].toString(),
-          deviceId: deviceId,
-          name: map['name'],
-          connectionType: ConnectionType.USB,
-          address: deviceId,
-          // Use deviceId as unique address for USB devices
-          isConnected: map['connected'] ?? false,
-          isRemove: map['isRemove'] ?? false,
-        );
-        printer.isConnected = await FlutterThermalPrinterPlatform.instance.isConnected(printer);
-        usbPrinters.add(printer);
+      // On Android `connected` already carries the permission state, so no per-device isConnected round trip
+      List<DeviceModel> usbPrinters = EventCodec.decodeDevices(devices);
+      if (devices is! Uint8List) {
+        for (var printer in usbPrinters) {
+          printer.isConnected = await FlutterThermalPrinterPlatform.instance.isConnected(printer);
+        }
       }
 
       _devices.addAll(usbPrinters);
       _usbSubscription?.cancel();
       _usbSubscription = _deviceEventChannel.receiveBroadcastStream().listen((event) {
-        final map = Map<String, dynamic>.from(event);
-        final deviceId = map['deviceId'].toString();
-        DeviceModel deviceModel=  DeviceModel(
-          vendorId: map['vendorId'].toString(),
-          productId: map['productId'].toString(),
-          deviceId: deviceId,
-          name: map['name'],
-          connectionType: ConnectionType.USB,
-          address: deviceId,
-          // Use deviceId as unique address for USB devices
-          isConnected: map['connected'] ?? false,
-          isRemove: map['isRemove'] ?? false,
-        );
-        _updateOrAddPrinter(deviceModel);
+        for (final deviceModel in EventCodec.decodeDevices(event)) {
+          _updateOrAddPrinter(deviceModel);
+        }
       });
 
       _sortDevices();
@@ -3,6 +3,8 @@ import 'dart:io';
 import 'dart:typed_data';
 import 'package:esc_pos_utils_plus/esc_pos_utils_plus.dart';
 import 'package:flutter/material.dart';
+import 'package:flutter_thermal_printer/flutter_thermal_printer_platform_interface.dart';
+import 'package:flutter_thermal_printer/utils/print_batch.dart';
 import 'package:flutter_thermal_printer/utils/printer.dart';
 import 'package:image/image.dart' as img;
 import 'package:screenshot/screenshot.dart';
@@ -11,6 +13,7 @@ import 'Others/other_printers_manager.dart';
 
 export 'package:esc_pos_utils_plus/esc_pos_utils_plus.dart';
 export 'package:flutter_thermal_printer/network/network_printer.dart';
+export 'package:flutter_thermal_printer/utils/print_batch.dart';
 
 class FlutterThermalPrinter {
   FlutterThermalPrinter._();
@@ -70,6 +73,61 @@ class FlutterThermalPrinter {
     }
   }
 
+  /// Runs the shared printer/caller-ID service in an Android foreground service
+  /// (with an ongoing notification), so USB printing and caller-ID listening keep
+  /// running while the UI is in the background or its engine is detached.
+  ///
+  /// Completes once the service is in the foreground. Throws a
+  /// `PlatformException` with code `FOREGROUND_SERVICE_FAILED` if Android
+  /// refuses it, e.g. when started from the background on Android 12+ or
+  /// before any USB permission was granted on Android 14+.
+  Future<bool> startForegroundService({String? title, String? text}) async {
+    if (!Platform.isAndroid) {
+      return false;
+    } else {
+      return await FlutterThermalPrinterPlatform.instance.startForegroundService(title: title, text: text);
+    }
+  }
+
+  Future<bool> stopForegroundService() async {
+    if (!Platform.isAndroid) {
+      return false;
+    } else {
+      return await FlutterThermalPrinterPlatform.instance.stopForegroundService();
+    }
+  }
+
+  /// Opt in to pre-opening authorised USB printers when the plugin attaches
+  /// (and when a printer is plugged in), so the first print pays no setup cost.
+  /// The choice is persisted and applies from the next app launch as well.
+  Future<bool> setWarmUpEnabled(bool enabled) async {
+    if (!Platform.isAndroid) {
+      return false;
+    } else {
+      return await OtherPrinterManager.instance.setWarmUpEnabled(enabled);
+    }
+  }
+
+  /// Timing of each warm-up pass: `devices`, `printers`, `warmConnections`, `elapsedMs`.
+  Stream<Map<String, dynamic>> get warmUpStream {
+    if (!Platform.isAndroid) {
+      return const Stream.empty();
+    } else {
+      return OtherPrinterManager.instance.warmUpStream;
+    }
+  }
+
+  /// Recent caller-ID calls kept by the native side, newest first, with resent
+  /// frames already dropped. Pass [number] to get only calls from that number.
+  /// Each entry has `caller`, `callee`, `datetime`, `port` and `receivedAt` (ms since epoch).
+  Future<List<Map<String, dynamic>>> getRecentCalls({String? number, int? limit}) async {
+    if (!Platform.isAndroid) {
+      return [];
+    } else {
+      return await FlutterThermalPrinterPlatform.instance.getRecentCalls(number: number, limit: limit);
+    }
+  }
+
   Future<bool> connect(DeviceModel device) async {
     if (Platform.isWindows) {
       return false;
@@ -104,6 +162,80 @@ class FlutterThermalPrinter {
     }
   }
 
+  /// Prints several jobs in one call. On Android, USB jobs are sent in a single
+  /// method-channel round trip and run concurrently across printers, in order
+  /// per printer. Results are returned in the same order as [jobs].
+  ///
+  /// On Android, USB jobs are spooled to disk before they are sent, and jobs
+  /// whose result never arrived (the app was killed mid-print) are re-sent on
+  /// the next launch. A job reported here, failed or not, is not re-sent, so
+  /// retrying a failed job is up to the caller.
+  Future<List<PrintBatchResult>> printBatch(List<PrintBatchJob> jobs) async {
+    if (Platform.isWindows) {
+      throw Exception("Do not support Windows");
+    } else {
+      return await OtherPrinterManager.instance.printBatch(jobs);
+    }
+  }
+
+  /// USB print jobs spooled on Android but not yet printed or reported: the
+  /// ones being sent right now and any left from a previous run that could not
+  /// be re-sent yet. Each entry has `id`, `vendorId`, `productId`, `deviceId`
+  /// and `size` (bytes).
+  Future<List<Map<String, dynamic>>> getPendingJobs() async {
+    if (!Platform.isAndroid) {
+      return [];
+    }
+    return await FlutterThermalPrinterPlatform.instance.getPendingJobs();
+  }
+
+  /// Removes a pending job (see [getPendingJobs]) so it is never re-sent.
+  /// Returns false if it was already printed, reported or dropped.
+  Future<bool> cancelPendingJob(int id) async {
+    if (!Platform.isAndroid) {
+      return false;
+    }
+    return await FlutterThermalPrinterPlatform.instance.cancelPendingJob(id);
+  }
+
+  /// State of the Android print spool: `ready` (false while it is still being
+  /// opened at startup), `pending` jobs, and `dropped`, the oldest jobs
+  /// discarded since startup to keep the spool within its size limits.
+  Future<Map<String, dynamic>> getSpoolStats() async {
+    if (!Platform.isAndroid) {
+      return {"ready": false, "pending": 0, "dropped": 0};
+    }
+    return await FlutterThermalPrinterPlatform.instance.getSpoolStats();
+  }
+
+  /// Prints a standard raster test pattern on a USB printer at full speed and
+  /// saves its sustained throughput for that vendorId/productId. Later jobs to
+  /// the same model are paced to just under that rate, with timeouts taken from
+  /// the profile. Returns `bytesPerSecond`, `burstBytes`, `chunkSize`,
+  /// `stallMillis` and `chunkTimeoutMillis`.
+  Future<Map<String, dynamic>> calibrate(DeviceModel device) async {
+    if (!Platform.isAndroid || device.connectionType != ConnectionType.USB) {
+      throw Exception("Calibration is only supported for USB printers on Android");
+    }
+    return await FlutterThermalPrinterPlatform.instance.calibrate(device);
+  }
+
+  /// The saved throughput profile for the device's model, or null if it was never calibrated.
+  Future<Map<String, dynamic>?> getThroughputProfile(DeviceModel device) async {
+    if (!Platform.isAndroid || device.connectionType != ConnectionType.USB) {
+      return null;
+    }
+    return await FlutterThermalPrinterPlatform.instance.getThroughputProfile(device);
+  }
+
+  /// Forgets the device model's profile; its jobs go back to unpaced writes.
+  Future<bool> clearThroughputProfile(DeviceModel device) async {
+    if (!Platform.isAndroid || device.connectionType != ConnectionType.USB) {
+      return false;
+    }
+    return await FlutterThermalPrinterPlatform.instance.clearThroughputProfile(device);
+  }
+
   Future<void> getDevices({
     List<ConnectionType> connectionTypes = const [ConnectionType.USB],
     bool androidUsesFineLocation = false,
@@ -367,4 +499,31 @@ class FlutterThermalPrinter {
       throw Exception("Failed to print image bytes: $e");
     }
   }
+
+  /// Prints a (possibly very long) image as raster in horizontal bands. On
+  /// Android USB printers the bands are dithered in parallel natively and each
+  /// is sent as soon as it is ready, so printing starts before the whole image
+  /// is encoded; returns `bytesWritten`, `bands`, `timeToFirstByteMicros` and
+  /// `totalMicros`. Elsewhere falls back to [printImageBytes] and returns null.
+  ///
+  /// Decoding the image is not parallel: Android decodes one band at a time,
+  /// so for large compressed images (e.g. a big JPEG) decoding, not dithering,
+  /// bounds the speed and extra cores do not help.
+  Future<Map<String, dynamic>?> printImageBanded({
+    required Uint8List imageBytes,
+    required DeviceModel printer,
+    int? customWidth,
+    int? bandRows,
+  }) async {
+    if (!Platform.isAndroid || printer.connectionType != ConnectionType.USB) {
+      await printImageBytes(imageBytes: imageBytes, printer: printer, customWidth: customWidth);
+      return null;
+    }
+    return await FlutterThermalPrinterPlatform.instance.printImage(
+      printer,
+      imageBytes,
+      width: customWidth == null ? null : _makeDivisibleBy8(customWidth),
+      bandRows: bandRows,
+    );
+  }
 }
@@ -1,5 +1,6 @@
 import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
+import 'package:flutter_thermal_printer/utils/print_batch.dart';
 import 'package:flutter_thermal_printer/utils/printer.dart';
 
 import 'flutter_thermal_printer_platform_interface.dart';
@@ -41,6 +42,80 @@ class MethodChannelFlutterThermalPrinter extends FlutterThermalPrinterPlatform {
     });
   }
 
+  @override
+  Future<List<PrintBatchResult>> printBatch(List<PrintBatchJob> jobs) async {
+    final results = await methodChannel.invokeListMethod<Map>('printBatch', {
+      "jobs": jobs
+          .map((job) => {
+                "vendorId": job.device.vendorId.toString(),
+                "productId": job.device.productId.toString(),
+                "deviceId": job.device.deviceId.toString(),
+                "data": job.data,
+                if (job.timeout != null) "timeoutMs": job.timeout!.inMilliseconds,
+              })
+          .toList(),
+    });
+    return (results ?? []).map((map) => PrintBatchResult.fromJson(Map<String, dynamic>.from(map))).toList();
+  }
+
+  @override
+  Future<List<Map<String, dynamic>>> getPendingJobs() async {
+    final jobs = await methodChannel.invokeListMethod<Map>('getPendingJobs');
+    return (jobs ?? []).map((job) => Map<String, dynamic>.from(job)).toList();
+  }
+
+  @override
+  Future<bool> cancelPendingJob(int id) async {
+    return await methodChannel.invokeMethod('cancelPendingJob', {
+      "id": id,
+    });
+  }
+
+  @override
+  Future<Map<String, dynamic>> getSpoolStats() async {
+    final stats = await methodChannel.invokeMapMethod<String, dynamic>('getSpoolStats');
+    return stats!;
+  }
+
+  @override
+  Future<Map<String, dynamic>> printImage(DeviceModel device, Uint8List image, {int? width, int? bandRows}) async {
+    final stats = await methodChannel.invokeMapMethod<String, dynamic>('printImage', {
+      "vendorId": device.vendorId.toString(),
+      "productId": device.productId.toString(),
+      "deviceId": device.deviceId.toString(),
+      "image": image,
+      if (width != null) "width": width,
+      if (bandRows != null) "bandRows": bandRows,
+    });
+    return stats!;
+  }
+
+  @override
+  Future<Map<String, dynamic>> calibrate(DeviceModel device) async {
+    final profile = await methodChannel.invokeMapMethod<String, dynamic>('calibrate', {
+      "vendorId": device.vendorId.toString(),
+      "productId": device.productId.toString(),
+      "deviceId": device.deviceId.toString(),
+    });
+    return profile!;
+  }
+
+  @override
+  Future<Map<String, dynamic>?> getThroughputProfile(DeviceModel device) async {
+    return await methodChannel.invokeMapMethod<String, dynamic>('getThroughputProfile', {
+      "vendorId": device.vendorId.toString(),
+      "productId": device.productId.toString(),
+    });
+  }
+
+  @override
+  Future<bool> clearThroughputProfile(DeviceModel device) async {
+    return await methodChannel.invokeMethod('clearThroughputProfile', {
+      "vendorId": device.vendorId.toString(),
+      "productId": device.productId.toString(),
+    });
+  }
+
   @override
   Future<bool> isConnected(DeviceModel device) async {
     return await methodChannel.invokeMethod('isConnected', {
@@ -79,4 +154,33 @@ class MethodChannelFlutterThermalPrinter extends FlutterThermalPrinterPlatform {
   Future<bool> stopListening() async {
     return await methodChannel.invokeMethod('stopListening');
   }
+
+  @override
+  Future<List<Map<String, dynamic>>> getRecentCalls({String? number, int? limit}) async {
+    final calls = await methodChannel.invokeListMethod<Map>('getRecentCalls', {
+      "number": number,
+      "limit": limit,
+    });
+    return (calls ?? []).map((call) => Map<String, dynamic>.from(call)).toList();
+  }
+
+  @override
+  Future<bool> startForegroundService({String? title, String? text}) async {
+    return await methodChannel.invokeMethod('startForegroundService', {
+      "title": title,
+      "text": text,
+    });
+  }
+
+  @override
+  Future<bool> stopForegroundService() async {
+    return await methodChannel.invokeMethod('stopForegroundService');
+  }
+
+  @override
+  Future<bool> setWarmUpEnabled(bool enabled) async {
+    return await methodChannel.invokeMethod('setWarmUpEnabled', {
+      "enabled": enabled,
+    });
+  }
 }
@@ -1,5 +1,6 @@
 import 'dart:typed_data';
 
+import 'package:flutter_thermal_printer/utils/print_batch.dart';
 import 'package:flutter_thermal_printer/utils/printer.dart';
 import 'package:plugin_platform_interface/plugin_platform_interface.dart';
 
@@ -33,6 +34,38 @@ abstract class FlutterThermalPrinterPlatform extends PlatformInterface {
     throw UnimplementedError("printText() has not been implemented.");
   }
 
+  Future<List<PrintBatchResult>> printBatch(List<PrintBatchJob> jobs) {
+    throw UnimplementedError("printBatch() has not been implemented.");
+  }
+
+  Future<List<Map<String, dynamic>>> getPendingJobs() {
+    throw UnimplementedError("getPendingJobs() has not been implemented.");
+  }
+
+  Future<bool> cancelPendingJob(int id) {
+    throw UnimplementedError("cancelPendingJob() has not been implemented.");
+  }
+
+  Future<Map<String, dynamic>> getSpoolStats() {
+    throw UnimplementedError("getSpoolStats() has not been implemented.");
+  }
+
+  Future<Map<String, dynamic>> printImage(DeviceModel device, Uint8List image, {int? width, int? bandRows}) {
+    throw UnimplementedError("printImage() has not been implemented.");
+  }
+
+  Future<Map<String, dynamic>> calibrate(DeviceModel device) {
+    throw UnimplementedError("calibrate() has not been implemented.");
+  }
+
+  Future<Map<String, dynamic>?> getThroughputProfile(DeviceModel device) {
+    throw UnimplementedError("getThroughputProfile() has not been implemented.");
+  }
+
+  Future<bool> clearThroughputProfile(DeviceModel device) {
+    throw UnimplementedError("clearThroughputProfile() has not been implemented.");
+  }
+
   Future<bool> isConnected(DeviceModel device) {
     throw UnimplementedError("isConnected() has not been implemented.");
   }
@@ -60,4 +93,20 @@ abstract class FlutterThermalPrinterPlatform extends PlatformInterface {
   Future<bool> stopListening() {
     throw UnimplementedError('stopListening() has not been implemented.');
   }
+
+  Future<List<Map<String, dynamic>>> getRecentCalls({String? number, int? limit}) {
+    throw UnimplementedError('getRecentCalls() has not been implemented.');
+  }
+
+  Future<bool> startForegroundService({String? title, String? text}) {
+    throw UnimplementedError('startForegroundService() has not been implemented.');
+  }
+
+  Future<bool> stopForegroundService() {
+    throw UnimplementedError('stopForegroundService() has not been implemented.');
+  }
+
+  Future<bool> setWarmUpEnabled(bool enabled) {
+    throw UnimplementedError('setWarmUpEnabled() has not been implemented.');
+  }
 }
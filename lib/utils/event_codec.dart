@@ -0,0 +1,132 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
+import 'package:flutter_thermal_printer/utils/printer.dart';
+
+/// Decoder for the compact binary events sent by the Android side
+/// (`codec/EventCodec.java`). Layout, big-endian:
+///
+/// ```
+/// header  : version u8 | type u8 | count u16
+/// device  : vendorId u16 | productId u16 | deviceId i32 | flags u8 | nameLen u16 | name utf8
+/// callerId: port u8 | datetimeLen u8 | datetime | callerLen u8 | caller | calleeLen u8 | callee
+/// ```
+///
+/// Platforms that still send `Map`s (macOS) are decoded through the legacy path.
+class EventCodec {
+  EventCodec._();
+
+  static const int version = 1;
+
+  static const int typeDeviceList = 1;
+  static const int typeDeviceEvent = 2;
+  static const int typeCallerId = 3;
+
+  static const int _flagConnected = 1;
+  static const int _flagRemoved = 1 << 1;
+  static const int _flagHasName = 1 << 2;
+
+  /// Decodes a device list or a single device event into USB [DeviceModel]s.
+  static List<DeviceModel> decodeDevices(dynamic event) {
+    if (event is! Uint8List) {
+      final maps = event is List ? event : [event];
+      return maps.map((map) => _legacyDevice(Map<String, dynamic>.from(map))).toList();
+    }
+    final reader = _Reader(event);
+    final count = reader.header(const [typeDeviceList, typeDeviceEvent]);
+    final devices = <DeviceModel>[];
+    for (var i = 0; i < count; i++) {
+      final vendorId = reader.uint16();
+      final productId = reader.uint16();
+      final deviceId = reader.int32().toString();
+      final flags = reader.uint8();
+      final name = reader.string(reader.uint16());
+      devices.add(DeviceModel(
+        vendorId: vendorId.toString(),
+        productId: productId.toString(),
+        deviceId: deviceId,
+        name: flags & _flagHasName != 0 ? name : null,
+        connectionType: ConnectionType.USB,
+        // Use deviceId as unique address for USB devices
+        address: deviceId,
+        isConnected: flags & _flagConnected != 0,
+        isRemove: flags & _flagRemoved != 0,
+      ));
+    }
+    return devices;
+  }
+
+  /// Decodes a caller-ID record into the map shape emitted by `callerIdStream`.
+  static Map<String, dynamic> decodeCallerId(dynamic event) {
+    if (event is! Uint8List) {
+      return Map<String, dynamic>.from(event);
+    }
+    final reader = _Reader(event);
+    reader.header(const [typeCallerId]);
+    final port = String.fromCharCode(reader.uint8());
+    final datetime = reader.string(reader.uint8());
+    final caller = reader.string(reader.uint8());
+    final callee = reader.string(reader.uint8());
+    return {
+      'caller': caller,
+      'callee': callee,
+      'datetime': datetime,
+      'port': port,
+    };
+  }
+
+  static DeviceModel _legacyDevice(Map<String, dynamic> map) {
+    final deviceId = map['deviceId'].toString();
+    return DeviceModel(
+      vendorId: map['vendorId'].toString(),
+      productId: map['productId'].toString(),
+      deviceId: deviceId,
+      name: map['name'],
+      connectionType: ConnectionType.USB,
+      address: deviceId,
+      isConnected: map['connected'] ?? false,
+      isRemove: map['isRemove'] ?? false,
+    );
+  }
+}
+
+class _Reader {
+  _Reader(this._bytes) : _data = ByteData.sublistView(_bytes);
+
+  final Uint8List _bytes;
+  final ByteData _data;
+  int _offset = 0;
+
+  /// Validates version and type, returning the record count.
+  int header(List<int> expectedTypes) {
+    final messageVersion = uint8();
+    if (messageVersion > EventCodec.version) {
+      throw FormatException('Unsupported event version $messageVersion (supported: ${EventCodec.version})');
+    }
+    final type = uint8();
+    if (!expectedTypes.contains(type)) {
+      throw FormatException('Unexpected event type $type');
+    }
+    return uint16();
+  }
+
+  int uint8() => _data.getUint8(_offset++);
+
+  int uint16() {
+    final value = _data.getUint16(_offset);
+    _offset += 2;
+    return value;
+  }
+
+  int int32() {
+    final value = _data.getInt32(_offset);
+    _offset += 4;
+    return value;
+  }
+
+  String string(int length) {
+    final value = utf8.decode(Uint8List.sublistView(_bytes, _offset, _offset + length), allowMalformed: true);
+    _offset += length;
+    return value;
+  }
+}
@@ -0,0 +1,43 @@
+import 'dart:typed_data';
+
+import 'package:flutter_thermal_printer/utils/printer.dart';
+
+/// One entry of a [FlutterThermalPrinter.printBatch] call.
+class PrintBatchJob {
+  final DeviceModel device;
+  final Uint8List data;
+
+  /// Transfer timeout for this job; the native default (5s) when null.
+  final Duration? timeout;
+
+  PrintBatchJob({
+    required this.device,
+    required this.data,
+    this.timeout,
+  });
+}
+
+/// Outcome of one [PrintBatchJob], in the same order as the submitted jobs.
+class PrintBatchResult {
+  /// Bytes that reached the printer, or -1 if none did. Less than the job's
+  /// size when the transfer failed part-way; those bytes have been printed.
+  final int bytesWritten;
+  final Duration latency;
+  final String? error;
+
+  PrintBatchResult({
+    required this.bytesWritten,
+    required this.latency,
+    this.error,
+  });
+
+  bool get success => error == null;
+
+  PrintBatchResult.fromJson(Map<String, dynamic> json)
+      : bytesWritten = json['bytesWritten'] ?? -1,
+        latency = Duration(microseconds: json['latencyMicros'] ?? 0),
+        error = json['error'];
+
+  @override
+  String toString() => 'PrintBatchResult(bytesWritten: $bytesWritten, latency: $latency, error: $error)';
+}
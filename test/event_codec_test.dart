@@ -0,0 +1,56 @@
+import 'dart:typed_data';
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:flutter_thermal_printer/utils/event_codec.dart';
+
+// The byte arrays below are the golden output of the Java encoder, checked in
+// android/src/test/java/com/example/flutter_thermal_printer/codec/EventCodecTest.java;
+// change both together.
+void main() {
+  test('decodes a binary device list', () {
+    final bytes = Uint8List.fromList([
+      1, 1, 0, 1, // version 1, device list, 1 device
+      0x04, 0x83, 0x57, 0x40, // vendorId 1155, productId 22336
+      0, 0, 0x03, 0xEA, // deviceId 1002
+      5, // connected | hasName
+      0, 7, ...'Printer'.codeUnits,
+    ]);
+    final devices = EventCodec.decodeDevices(bytes);
+    expect(devices, hasLength(1));
+    expect(devices.first.vendorId, '1155');
+    expect(devices.first.productId, '22336');
+    expect(devices.first.deviceId, '1002');
+    expect(devices.first.address, '1002');
+    expect(devices.first.name, 'Printer');
+    expect(devices.first.isConnected, true);
+    expect(devices.first.isRemove, false);
+  });
+
+  test('decodes a binary caller-ID record', () {
+    final bytes = Uint8List.fromList([
+      1, 3, 0, 1,
+      'A'.codeUnitAt(0),
+      8, ...'10191230'.codeUnits,
+      3, ...'123'.codeUnits,
+      0,
+    ]);
+    expect(EventCodec.decodeCallerId(bytes), {
+      'caller': '123',
+      'callee': '',
+      'datetime': '10191230',
+      'port': 'A',
+    });
+  });
+
+  test('rejects newer versions', () {
+    expect(() => EventCodec.decodeDevices(Uint8List.fromList([2, 1, 0, 0])), throwsFormatException);
+  });
+
+  test('still accepts legacy maps', () {
+    final devices = EventCodec.decodeDevices([
+      {'vendorId': '1', 'productId': '2', 'deviceId': '3', 'name': 'Printer', 'connected': true},
+    ]);
+    expect(devices.first.deviceId, '3');
+    expect(devices.first.isConnected, true);
+  });
+}